@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.benchmarks;
+
+import com.google.gson.Gson;
+import org.fundacionjala.jenkins.plugins.enforce.CoverageSummary;
+import org.fundacionjala.jenkins.plugins.enforce.PieChartData;
+import org.fundacionjala.jenkins.plugins.enforce.report.ClassCoverageIndex;
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageReportParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a coverage report from 1 KB to 100 MB with the streaming parser and with the Gson object
+ * mapping the plugin used before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CoverageParsingBenchmark {
+
+    @Param({"1024", "1048576", "10485760", "104857600"})
+    public long reportSize;
+
+    private File report;
+
+    @Setup(Level.Trial)
+    public void generateReport() throws IOException {
+        report = File.createTempFile("enforce-coverage", ".json");
+        new SyntheticReportGenerator(reportSize, 42).write(report);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteReport() {
+        report.delete();
+    }
+
+    @Benchmark
+    public PieChartData newInstance() throws IOException {
+        return PieChartData.newInstance(report.getPath());
+    }
+
+    @Benchmark
+    public CoverageSummary streamingParser() throws IOException {
+        return new CoverageReportParser().parse(report);
+    }
+
+    @Benchmark
+    public ClassCoverageIndex streamingParserWithClassIndex() throws IOException {
+        ClassCoverageIndex.Builder builder = new ClassCoverageIndex.Builder();
+        new CoverageReportParser(builder).parse(report);
+        return builder.build();
+    }
+
+    @Benchmark
+    public PieChartData gsonBaseline() throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(report), Charset.forName("UTF-8")));
+        try {
+            return new Gson().fromJson(reader, PieChartData.class);
+        } finally {
+            reader.close();
+        }
+    }
+}
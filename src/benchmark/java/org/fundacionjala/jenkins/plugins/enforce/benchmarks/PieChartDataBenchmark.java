@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.benchmarks;
+
+import org.fundacionjala.jenkins.plugins.enforce.CoverageSummary;
+import org.fundacionjala.jenkins.plugins.enforce.PieChartData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the PieChartData calls made on every dashboard render and macro expansion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PieChartDataBenchmark {
+
+    private PieChartData pieChartData;
+    private CoverageSummary summary;
+
+    @Setup
+    public void createData() {
+        summary = new CoverageSummary(2336, 210, new int[]{11, 5, 19, 20});
+        pieChartData = summary.toPieChartData();
+    }
+
+    @Benchmark
+    public ArrayList<ArrayList> getDataForJavascript() {
+        return pieChartData.getDataForJavascript(pieChartData.getData());
+    }
+
+    @Benchmark
+    public ArrayList<ArrayList> getCoverageDataForJavascript() {
+        return pieChartData.getDataForJavascript(pieChartData.getCoverageData());
+    }
+
+    @Benchmark
+    public double getRoundedPercentage() {
+        return pieChartData.getRoundedPercentage(2);
+    }
+
+    @Benchmark
+    public String getCoveragePercentStatus() {
+        return pieChartData.getCoveragePercentStatus();
+    }
+
+    @Benchmark
+    public String getFileCoverageStatus() {
+        return pieChartData.getFileCoverageStatus();
+    }
+
+    @Benchmark
+    public PieChartData toPieChartData() {
+        return summary.toPieChartData();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.benchmarks;
+
+import org.fundacionjala.jenkins.plugins.enforce.CoverageBands;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Generates EnForce coverage reports of a given size with the per file schema and the two arrays schema.
+ * The same size and seed always generate the same report.
+ * <p>
+ * Usage: java SyntheticReportGenerator &lt;output file&gt; &lt;size in bytes&gt; [seed]
+ */
+public final class SyntheticReportGenerator {
+
+    private final long targetSize;
+    private final Random random;
+
+    /**
+     * Creates a generator
+     *
+     * @param targetSize approximate size of the report in bytes
+     * @param seed       seed of the random line numbers
+     */
+    public SyntheticReportGenerator(long targetSize, long seed) {
+        this.targetSize = targetSize;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Writes a report to a file
+     *
+     * @param report the report file, it is replaced
+     */
+    public void write(File report) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(report), Charset.forName("UTF-8")));
+        try {
+            write(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes a report
+     *
+     * @param writer receives the JSON report, it is not closed
+     */
+    public void write(Writer writer) throws IOException {
+        CountingWriter output = new CountingWriter(writer);
+        long coveredLines = 0;
+        long uncoveredLines = 0;
+        int[] fileCounts = new int[CoverageBands.DEFAULT.getBandCount()];
+
+        output.write("{\"title\": \"Synthetic coverage\", \"files\": [");
+        for (int file = 0; output.getCount() < targetSize || file == 0; file++) {
+            int lines = 20 + random.nextInt(400);
+            int covered = 0;
+            StringBuilder coveredNumbers = new StringBuilder();
+            StringBuilder uncoveredNumbers = new StringBuilder();
+            double ratio = random.nextDouble();
+            for (int line = 1; line <= lines; line++) {
+                boolean isCovered = random.nextDouble() < ratio;
+                StringBuilder numbers = isCovered ? coveredNumbers : uncoveredNumbers;
+                if (numbers.length() > 0) {
+                    numbers.append(',');
+                }
+                numbers.append(line);
+                covered += isCovered ? 1 : 0;
+            }
+            coveredLines += covered;
+            uncoveredLines += lines - covered;
+            fileCounts[CoverageBands.DEFAULT.getBand(covered * 100.0 / lines)]++;
+
+            output.write(file == 0 ? "\n" : ",\n");
+            output.write("{\"name\": \"SyntheticClass" + file + "\", \"coveredLines\": [" + coveredNumbers
+                    + "], \"uncoveredLines\": [" + uncoveredNumbers + "]}");
+        }
+        output.write("],\n\"coverageData\": [[\"Lines\", \"Number\"], [\"Covered\", " + coveredLines
+                + "], [\"Not Covered\", " + uncoveredLines + "]],\n\"data\": [[\"Lines\", \"Number\"]");
+        for (int band = 0; band < fileCounts.length; band++) {
+            output.write(", [\"" + CoverageBands.DEFAULT.getLabel(band) + "\", " + fileCounts[band] + "]");
+        }
+        output.write("]}\n");
+        output.flush();
+    }
+
+    public static void main(String[] arguments) throws IOException {
+        if (arguments.length < 2) {
+            System.err.println("Usage: SyntheticReportGenerator <output file> <size in bytes> [seed]");
+            System.exit(1);
+        }
+        long seed = arguments.length > 2 ? Long.parseLong(arguments[2]) : 42;
+        new SyntheticReportGenerator(Long.parseLong(arguments[1]), seed).write(new File(arguments[0]));
+    }
+
+    /**
+     * Counts the characters written, the reports are ASCII so they are also bytes
+     */
+    private static final class CountingWriter extends Writer {
+
+        private final Writer writer;
+        private long count;
+
+        CountingWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            writer.write(buffer, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
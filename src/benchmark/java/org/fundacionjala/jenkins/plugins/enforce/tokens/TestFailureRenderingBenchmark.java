@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import hudson.tasks.junit.CaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering ENFORCE_TEST_RESULT for large sets of failed tests: the macro with its default parameters,
+ * which renders every failure as it always did, and the renderer used when limits are given, unbounded and within
+ * a budget.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TestFailureRenderingBenchmark {
+
+    @Param({"10", "2000", "20000"})
+    public int failures;
+
+    private List<CaseResult> failedTests;
+
+    @Setup
+    public void createFailures() {
+        StringBuilder trace = new StringBuilder();
+        for (int line = 0; line < 60; line++) {
+            trace.append("Class.SyntheticClass.method: line ").append(line).append(", column 1\n");
+        }
+        final String stackTrace = trace.toString();
+        failedTests = new ArrayList<CaseResult>(failures);
+        for (int i = 0; i < failures; i++) {
+            final String className = "SyntheticClass" + (i % 200);
+            failedTests.add(new CaseResult(null, "test" + i, stackTrace) {
+                @Override
+                public String getClassName() {
+                    return className;
+                }
+
+                @Override
+                public String getErrorDetails() {
+                    return "System.AssertException: Assertion Failed: Expected: 1, Actual: 2";
+                }
+
+                @Override
+                public String getStderr() {
+                    return stackTrace;
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public String renderMacroDefaults() {
+        return new EnforceTestResultTokenMacro().render("Test Result: failures", failedTests);
+    }
+
+    @Benchmark
+    public String renderUnbounded() {
+        return new TestFailureRenderer(0, 0, 0).render("Test Result: failures", failedTests);
+    }
+
+    @Benchmark
+    public String renderBounded() {
+        return new TestFailureRenderer(50, 2000, 100000).render("Test Result: failures", failedTests);
+    }
+}
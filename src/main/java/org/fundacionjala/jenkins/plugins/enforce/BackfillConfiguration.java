@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.Extension;
+import jenkins.model.GlobalConfiguration;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ * Configures the backfill of the coverage of old builds in the global configuration: whether it runs, how many jobs
+ * it backfills at the same time and how many bytes per second it may read. The section also shows how far the
+ * backfill is.
+ */
+@Extension
+public class BackfillConfiguration extends GlobalConfiguration {
+
+    private boolean enabled = true;
+    private int concurrency = Constants.BACKFILL_DEFAULT_CONCURRENCY;
+    private int ioBudget = Constants.BACKFILL_DEFAULT_IO_BUDGET;
+
+    public BackfillConfiguration() {
+        load();
+    }
+
+    /**
+     * Gets the configuration of the Jenkins instance
+     */
+    public static BackfillConfiguration get() {
+        return GlobalConfiguration.all().get(BackfillConfiguration.class);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @DataBoundSetter
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the amount of jobs backfilled at the same time, at least one
+     */
+    public int getConcurrency() {
+        return Math.max(1, concurrency);
+    }
+
+    @DataBoundSetter
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Gets the kilobytes per second the backfill may read from build directories, at least one
+     */
+    public int getIoBudget() {
+        return Math.max(1, ioBudget);
+    }
+
+    @DataBoundSetter
+    public void setIoBudget(int ioBudget) {
+        this.ioBudget = ioBudget;
+    }
+
+    /**
+     * Gets the progress of the backfill, shown under the settings
+     */
+    public BackfillProgress getProgress() {
+        return BackfillProgress.get();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Constants.BACKFILL_DISPLAY_NAME;
+    }
+
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        req.bindJSON(this, json);
+        save();
+        return true;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps where the backfill of every job is, so it goes on from there after a restart. The backfill goes from the
+ * newest build of a job to the oldest one, the cursor of a job is the next build number it looks at and zero when
+ * every build was looked at.
+ */
+public final class BackfillProgress {
+
+    static final String FILE_NAME = "enforce-backfill.xml";
+    private static final Logger LOGGER = Logger.getLogger(BackfillProgress.class.getName());
+    private static BackfillProgress instance;
+
+    private Map<String, Integer> cursors = new HashMap<String, Integer>();
+    private long buildsVisited;
+    private long buildsBackfilled;
+    private long bytesRead;
+    private long errors;
+    private transient Set<String> runningJobs = new HashSet<String>();
+    private transient XmlFile file;
+
+    /**
+     * Gets the progress of the Jenkins instance, it is read from its file the first time
+     */
+    public static synchronized BackfillProgress get() {
+        if (null == instance) {
+            XmlFile file = new XmlFile(new File(Jenkins.getInstance().getRootDir(), FILE_NAME));
+            BackfillProgress progress = null;
+            if (file.exists()) {
+                try {
+                    progress = (BackfillProgress) file.read();
+                } catch (IOException exception) {
+                    LOGGER.log(Level.WARNING, "Unable to read the backfill progress, it starts again", exception);
+                }
+            }
+            instance = null == progress ? new BackfillProgress() : progress;
+            instance.file = file;
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the next build number to look at in a job
+     *
+     * @return the build number, zero if the job is done or null if its backfill did not start
+     */
+    public synchronized Integer getCursor(String jobName) {
+        return cursors.get(jobName);
+    }
+
+    /**
+     * Verifies if every build of a job was looked at
+     */
+    public synchronized boolean isDone(String jobName) {
+        Integer cursor = cursors.get(jobName);
+        return null != cursor && cursor <= 0;
+    }
+
+    synchronized void start(String jobName, int cursor) {
+        runningJobs.add(jobName);
+        if (!cursors.containsKey(jobName)) {
+            cursors.put(jobName, cursor);
+            save();
+        }
+    }
+
+    /**
+     * Records that a build was looked at, it is saved by the next {@link #checkpoint()}
+     *
+     * @param jobName    the job full name
+     * @param next       the next build number to look at
+     * @param backfilled true if coverage was added to the build
+     * @param bytes      bytes read from the build
+     */
+    synchronized void advance(String jobName, int next, boolean backfilled, long bytes) {
+        cursors.put(jobName, next);
+        buildsVisited++;
+        if (backfilled) {
+            buildsBackfilled++;
+        }
+        bytesRead += bytes;
+    }
+
+    /**
+     * Saves the cursors, the backfill calls it once the builds before the cursors are in the histories
+     */
+    synchronized void checkpoint() {
+        save();
+    }
+
+    synchronized void fail() {
+        errors++;
+    }
+
+    synchronized void finish(String jobName, boolean done) {
+        if (done) {
+            cursors.put(jobName, 0);
+        }
+        runningJobs.remove(jobName);
+        save();
+    }
+
+    /**
+     * Drops the progress of a deleted or renamed job
+     */
+    synchronized void remove(String jobName) {
+        if (null != cursors.remove(jobName)) {
+            save();
+        }
+    }
+
+    /**
+     * Keeps the progress of a renamed or moved job
+     */
+    synchronized void move(String oldJobName, String newJobName) {
+        Integer cursor = cursors.remove(oldJobName);
+        if (null != cursor) {
+            cursors.put(newJobName, cursor);
+            save();
+        }
+    }
+
+    public synchronized int getJobCount() {
+        return cursors.size();
+    }
+
+    /**
+     * Gets the amount of jobs whose every build was looked at
+     */
+    public synchronized int getDoneJobCount() {
+        int done = 0;
+        for (Integer cursor : cursors.values()) {
+            if (cursor <= 0) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Gets the cursors of the jobs that are being backfilled, by job name
+     */
+    public synchronized Map<String, Integer> getRunningJobs() {
+        Map<String, Integer> running = new TreeMap<String, Integer>();
+        for (String jobName : runningJobs) {
+            running.put(jobName, cursors.get(jobName));
+        }
+        return Collections.unmodifiableMap(running);
+    }
+
+    public synchronized long getBuildsVisited() {
+        return buildsVisited;
+    }
+
+    public synchronized long getBuildsBackfilled() {
+        return buildsBackfilled;
+    }
+
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    private void save() {
+        try {
+            file.write(this);
+        } catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Unable to save the backfill progress", exception);
+        }
+    }
+
+    private Object readResolve() {
+        if (null == cursors) {
+            cursors = new HashMap<String, Integer>();
+        }
+        runningJobs = new HashSet<String>();
+        return this;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.model.Run;
+import org.fundacionjala.jenkins.plugins.enforce.report.ClassCoverageIndex;
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageArchive;
+import org.fundacionjala.jenkins.plugins.enforce.report.TestImpactIndex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads and writes the coverage files a build keeps in its directory: the class index, the archive of the full
+ * coverage and the test impact index. They are read once and kept in bounded caches shared by all the builds.
+ * A build that reuses the coverage of a previous build has hard links to its files, so they are always replaced and
+ * never written in place.
+ */
+public final class BuildCoverageStore {
+
+    static final String CLASS_INDEX_FILE_NAME = "enforce-classes.idx";
+    static final String ARCHIVE_FILE_NAME = "enforce-coverage.archive";
+    static final String TEST_IMPACT_FILE_NAME = "enforce-test-impact.idx";
+    private static final RunCache<CoverageArchive> ARCHIVES =
+            new RunCache<CoverageArchive>("archives", Constants.ARCHIVE_CACHE_SIZE);
+    private static final RunCache<ClassCoverageIndex> CLASS_INDEXES =
+            new RunCache<ClassCoverageIndex>("classIndexes", Constants.CLASS_INDEX_CACHE_SIZE);
+    private static final RunCache<TestImpactIndex> TEST_IMPACTS =
+            new RunCache<TestImpactIndex>("testImpacts", Constants.TEST_IMPACT_CACHE_SIZE);
+
+    private final Run<?, ?> run;
+
+    private BuildCoverageStore(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    /**
+     * Gets the store of a build
+     *
+     * @param run the build
+     * @return the store of the files in the build directory
+     */
+    public static BuildCoverageStore of(Run<?, ?> run) {
+        return new BuildCoverageStore(run);
+    }
+
+    /**
+     * Verifies if the build has coverage per class
+     */
+    public boolean hasClassIndex() {
+        return new File(run.getRootDir(), CLASS_INDEX_FILE_NAME).exists();
+    }
+
+    /**
+     * Gets the coverage per class of the build
+     *
+     * @return the class index or null if the report of the build did not have per file data
+     */
+    public ClassCoverageIndex getClassIndex() throws IOException, InterruptedException {
+        final File file = new File(run.getRootDir(), CLASS_INDEX_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        return CLASS_INDEXES.get(run, new Callable<ClassCoverageIndex>() {
+            public ClassCoverageIndex call() throws IOException {
+                return ClassCoverageIndex.load(file);
+            }
+        });
+    }
+
+    /**
+     * Saves the coverage per class of the build
+     *
+     * @param classIndex the class index of the report
+     */
+    void saveClassIndex(ClassCoverageIndex classIndex) throws IOException {
+        File temporary = new File(run.getRootDir(), CLASS_INDEX_FILE_NAME + ".tmp");
+        classIndex.save(temporary);
+        CLASS_INDEXES.invalidate(run);
+        AtomicFiles.replace(temporary, new File(run.getRootDir(), CLASS_INDEX_FILE_NAME));
+    }
+
+    /**
+     * Verifies if the build archived its coverage with line numbers
+     */
+    public boolean hasArchive() {
+        return new File(run.getRootDir(), ARCHIVE_FILE_NAME).exists();
+    }
+
+    /**
+     * Gets the archive of the full coverage of the build, it is mapped from the build directory
+     *
+     * @return the archive or null if the report of the build did not have per file data
+     */
+    public CoverageArchive getArchive() throws IOException, InterruptedException {
+        final File file = new File(run.getRootDir(), ARCHIVE_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        return ARCHIVES.get(run, new Callable<CoverageArchive>() {
+            public CoverageArchive call() throws IOException {
+                return CoverageArchive.open(file);
+            }
+        });
+    }
+
+    /**
+     * Saves the archive of the full coverage of the build
+     *
+     * @param archive the archive bytes
+     */
+    void saveArchive(byte[] archive) throws IOException {
+        File temporary = new File(run.getRootDir(), ARCHIVE_FILE_NAME + ".tmp");
+        FileOutputStream output = new FileOutputStream(temporary);
+        try {
+            output.write(archive);
+        } finally {
+            output.close();
+        }
+        ARCHIVES.invalidate(run);
+        AtomicFiles.replace(temporary, new File(run.getRootDir(), ARCHIVE_FILE_NAME));
+    }
+
+    /**
+     * Verifies if the build knows the tests that cover each class
+     */
+    public boolean hasTestImpact() {
+        return new File(run.getRootDir(), TEST_IMPACT_FILE_NAME).exists();
+    }
+
+    /**
+     * Gets the tests that cover each class of the build
+     *
+     * @return the index or null if the files of the report of the build did not list their tests
+     */
+    public TestImpactIndex getTestImpact() throws IOException, InterruptedException {
+        final File file = new File(run.getRootDir(), TEST_IMPACT_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        return TEST_IMPACTS.get(run, new Callable<TestImpactIndex>() {
+            public TestImpactIndex call() throws IOException {
+                return TestImpactIndex.load(file);
+            }
+        });
+    }
+
+    /**
+     * Saves the tests that cover each class of the build
+     *
+     * @param testImpact the test impact index of the report
+     */
+    void saveTestImpact(TestImpactIndex testImpact) throws IOException {
+        File temporary = new File(run.getRootDir(), TEST_IMPACT_FILE_NAME + ".tmp");
+        testImpact.save(temporary);
+        TEST_IMPACTS.invalidate(run);
+        AtomicFiles.replace(temporary, new File(run.getRootDir(), TEST_IMPACT_FILE_NAME));
+    }
+
+    /**
+     * Makes the class index, the archive and the test impact index of a build whose coverage is reused by this build
+     * the files of this build too. They are hard linked, so no byte is copied and they stay when the reused build is
+     * deleted, and they are only copied when the file system has no hard links.
+     *
+     * @param source the build that has the files
+     */
+    void linkReusedFiles(Run<?, ?> source) throws IOException {
+        for (String fileName : new String[]{CLASS_INDEX_FILE_NAME, ARCHIVE_FILE_NAME, TEST_IMPACT_FILE_NAME}) {
+            File file = new File(source.getRootDir(), fileName);
+            if (file.exists()) {
+                Path link = new File(run.getRootDir(), fileName).toPath();
+                Files.deleteIfExists(link);
+                try {
+                    Files.createLink(link, file.toPath());
+                } catch (UnsupportedOperationException exception) {
+                    Files.copy(file.toPath(), link);
+                } catch (FileSystemException exception) {
+                    Files.copy(file.toPath(), link);
+                }
+            }
+        }
+        CLASS_INDEXES.invalidate(run);
+        ARCHIVES.invalidate(run);
+        TEST_IMPACTS.invalidate(run);
+    }
+
+    /**
+     * Finds the newest build that knows the tests that cover each class, starting from a build and going back at
+     * most {@link Constants#MAX_BASELINE_LOOKUP} builds
+     *
+     * @param run the first build that is looked at, it can be null
+     * @return the build or null if none of them has a test impact index
+     */
+    public static Run<?, ?> findTestImpactBuild(Run<?, ?> run) {
+        Run<?, ?> build = run;
+        for (int i = 0; null != build && i <= Constants.MAX_BASELINE_LOOKUP; i++) {
+            if (null != build.getAction(EnforceBuildAction.class) && of(build).hasTestImpact()) {
+                return build;
+            }
+            build = build.getPreviousBuild();
+        }
+        return null;
+    }
+}
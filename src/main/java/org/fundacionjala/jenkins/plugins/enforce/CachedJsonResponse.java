@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.fundacionjala.jenkins.plugins.enforce.metrics.EnforceMetrics;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps a JSON response rendered once with its ETag and Last-Modified values, so polling clients get the same bytes
+ * or a 304 without rendering anything again.
+ */
+public final class CachedJsonResponse {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String key;
+    private final byte[] body;
+    private final String etag;
+    private final long lastModified;
+
+    /**
+     * Creates a response
+     *
+     * @param key  identifies the state the body was rendered from, a new response is needed when it changes
+     * @param body the UTF-8 JSON body
+     */
+    public CachedJsonResponse(String key, byte[] body) {
+        this.key = key;
+        this.body = body;
+        this.etag = "\"" + digest(body) + "\"";
+        this.lastModified = System.currentTimeMillis() / 1000 * 1000;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sends the body, or 304 when the client already has it. If-None-Match takes precedence over If-Modified-Since.
+     */
+    public void serve(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException {
+        staplerResponse.setHeader("ETag", etag);
+        staplerResponse.setDateHeader("Last-Modified", lastModified);
+        staplerResponse.setHeader("Cache-Control", "no-cache");
+        String ifNoneMatch = staplerRequest.getHeader("If-None-Match");
+        boolean notModified = null != ifNoneMatch ? matches(ifNoneMatch)
+                : staplerRequest.getDateHeader("If-Modified-Since") >= lastModified;
+        if (notModified) {
+            EnforceMetrics.counter(EnforceMetrics.API_NOT_MODIFIED).inc();
+            staplerResponse.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        EnforceMetrics.counter(EnforceMetrics.API_RESPONSES).inc();
+        staplerResponse.setContentType("application/json;charset=UTF-8");
+        staplerResponse.setContentLength(body.length);
+        staplerResponse.getOutputStream().write(body);
+    }
+
+    private boolean matches(String ifNoneMatch) {
+        for (String value : ifNoneMatch.split(",")) {
+            String tag = value.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String digest(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("MD5").digest(body);
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
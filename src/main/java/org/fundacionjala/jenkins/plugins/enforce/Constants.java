@@ -21,9 +21,48 @@ public class Constants {
     public static final int DATA_COLUMNS = 2;
     public static final int DATA_ROWS = 5;
     public static final int COVERAGE_DATA_ROWS = 3;
+    public static final String COVERAGE_DATA_TITLE = "Lines";
+    public static final String COVERAGE_DATA_UNIT = "Number";
+    public static final String COVERED_LINES_LABEL = "Covered";
+    public static final String UNCOVERED_LINES_LABEL = "Not Covered";
+    public static final int TREND_MAX_BUILDS = 30;
+    public static final int[] DEFAULT_COVERAGE_BAND_LIMITS = {75, 80, 95};
+    public static final String[] COVERAGE_STATUS_NAMES = {"Danger", "Risk", "Acceptable", "Safe"};
+    public static final String[] COVERAGE_STATUS_COLORS = {"#d2322d", "#ed9c28", "#2aabd2", "#5cb85c"};
+    public static final int CLASS_INDEX_CACHE_SIZE = 16;
+    public static final int ARCHIVE_CACHE_SIZE = 16;
+    public static final int TEST_IMPACT_CACHE_SIZE = 16;
+    public static final int TEST_HISTORY_CACHE_SIZE = 32;
+    public static final int CLASS_PAGE_SIZE = 50;
+    public static final int CLASS_PAGE_MAX_SIZE = 500;
+    public static final String BUILD_ACTION_DISPLAY_NAME = "EnForce Coverage";
+    public static final String BUILD_ACTION_URL_NAME = "enforce";
+    public static final int MAX_LOGGED_REGRESSIONS = 20;
+    public static final String ROLLUP_URL_NAME = "enforce-coverage";
+    public static final String ROLLUP_DISPLAY_NAME = "EnForce Coverage";
+    public static final String ROLLUP_ICON_FILE_NAME = "graph.png";
+    public static final int ROLLUP_SAVE_INTERVAL = 20;
+    public static final String METRICS_URL_NAME = "enforce-metrics";
+    public static final String METRICS_DISPLAY_NAME = "EnForce Metrics";
+    public static final int METRICS_SLOWEST_JOBS = 20;
+    public static final int MAX_BASELINE_LOOKUP = 10;
+    public static final int TEST_HISTORY_MAX_BUILDS = 100;
+    public static final int TEST_HISTORY_DEFAULT_COUNT = 10;
+    public static final int TEST_HISTORY_DEFAULT_BUILDS = 30;
+    public static final int TEST_HISTORY_PAGE_SIZE = 25;
+    public static final String BACKFILL_DISPLAY_NAME = "EnForce Backfill";
+    public static final int BACKFILL_DEFAULT_CONCURRENCY = 1;
+    public static final int BACKFILL_DEFAULT_IO_BUDGET = 1024;
+    public static final int BACKFILL_INITIAL_DELAY_MINUTES = 5;
+    public static final int BACKFILL_PERIOD_MINUTES = 15;
+    public static final int BACKFILL_SAVE_INTERVAL = 20;
     public static final String ENFORCE_COVERAGE_RESULT = "ENFORCE_COVERAGE_RESULT";
     public static final String ENFORCE_COVERAGE_STATUS = "ENFORCE_COVERAGE_STATUS";
     public static final String ENFORCE_TEST_RESULT = "ENFORCE_TEST_RESULT";
+    public static final String ENFORCE_SLOWEST_TESTS = "ENFORCE_SLOWEST_TESTS";
+    public static final String ENFORCE_FLAKY_TESTS = "ENFORCE_FLAKY_TESTS";
+    public static final String ENFORCE_IMPACTED_TESTS = "ENFORCE_IMPACTED_TESTS";
+    public static final String IMPACTED_TESTS_FALLBACK = "ALL";
     public static final String SEPARATOR = "___________________________________________";
     public static final String LINE_SEPARATOR = "\t\n" + SEPARATOR;
 }
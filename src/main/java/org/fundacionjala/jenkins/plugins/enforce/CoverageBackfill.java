@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import org.fundacionjala.jenkins.plugins.enforce.tokens.EnforceMacroCache;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Adds the coverage stores to the builds that completed before the plugin kept them: the class index, the archive,
+ * the test impact index, the coverage and test histories and the folder and view rollups. The histories are only
+ * filled here, in batches, so pages and publishers never read every build of a job.
+ * <p>
+ * The reports are read from the archived artifacts of every build of the freestyle jobs that have the publisher, from
+ * the newest build to the oldest one, so the recent builds are ready first. Pipeline jobs do not keep the report name
+ * of the step, so only the histories and the rollups of their builds that published coverage are filled.
+ * <p>
+ * The jobs are backfilled by a bounded number of threads that share a budget of bytes per second, and the progress
+ * of every job is saved after each batch, so the backfill goes on after a restart from the build it was at.
+ */
+@Extension
+public class CoverageBackfill extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(CoverageBackfill.class.getName());
+
+    public CoverageBackfill() {
+        super("EnForce coverage backfill");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return Constants.BACKFILL_PERIOD_MINUTES * MIN;
+    }
+
+    @Override
+    public long getInitialDelay() {
+        return Constants.BACKFILL_INITIAL_DELAY_MINUTES * MIN;
+    }
+
+    @Override
+    protected void execute(final TaskListener listener) throws IOException, InterruptedException {
+        BackfillConfiguration configuration = BackfillConfiguration.get();
+        if (null == configuration || !configuration.isEnabled()) {
+            return;
+        }
+        final BackfillProgress progress = BackfillProgress.get();
+        final IoThrottle throttle = new IoThrottle(configuration.getIoBudget() * 1024L);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Job<?, ?> job : Jenkins.getInstance().getAllItems(Job.class)) {
+            if (progress.isDone(job.getFullName())) {
+                continue;
+            }
+            final EnforcePublisher publisher = job instanceof AbstractProject
+                    ? ((AbstractProject<?, ?>) job).getPublishersList().get(EnforcePublisher.class) : null;
+            if (null != publisher || !(job instanceof AbstractProject) && hasCoverage(job)) {
+                tasks.add(new Callable<Void>() {
+                    public Void call() throws InterruptedException {
+                        backfill(job, publisher, progress, throttle, listener);
+                        return null;
+                    }
+                });
+            }
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        listener.getLogger().println("Backfilling the coverage of " + tasks.size() + " jobs");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.size(), configuration.getConcurrency()));
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException exception) {
+                    LOGGER.log(Level.WARNING, "Unable to backfill the coverage of a job", exception.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies if the last completed build of a job published coverage, E.G. with the step of a Pipeline job
+     */
+    private static boolean hasCoverage(Job<?, ?> job) {
+        Run<?, ?> last = job.getLastCompletedBuild();
+        return null != last && null != last.getAction(EnforceBuildAction.class);
+    }
+
+    /**
+     * Backfills the builds of a job from its cursor to its first build, it stops at the next build when the backfill
+     * is disabled
+     *
+     * @param publisher the publisher of the job, null to only fill the histories with the coverage the builds have
+     */
+    static void backfill(Job<?, ?> job, EnforcePublisher publisher, BackfillProgress progress,
+                         IoThrottle throttle, TaskListener listener) throws InterruptedException {
+        String jobName = job.getFullName();
+        Run<?, ?> last = job.getLastCompletedBuild();
+        progress.start(jobName, null == last ? 0 : last.getNumber());
+        Integer cursor = progress.getCursor(jobName);
+        Run<?, ?> run = null == cursor || cursor <= 0 ? null : job.getNearestOldBuild(cursor);
+        int visited = 0;
+        // a backfill resumed after a restart may have added coverage to the newer builds before it
+        boolean actionsAdded = null != cursor && null != last && cursor < last.getNumber();
+        Map<Integer, TestHistory.Results> testResults = new TreeMap<Integer, TestHistory.Results>();
+        List<CoverageHistory.Entry> entries = new ArrayList<CoverageHistory.Entry>();
+        try {
+            for (; null != run; run = run.getPreviousBuild()) {
+                if (!BackfillConfiguration.get().isEnabled()) {
+                    recordHistories(job, entries, testResults, throttle);
+                    progress.finish(jobName, false);
+                    return;
+                }
+                Run<?, ?> previous = run.getPreviousBuild();
+                int next = null == previous ? 0 : previous.getNumber();
+                if (run.isBuilding()) {
+                    progress.advance(jobName, next, false, 0);
+                    continue;
+                }
+                EnforceBuildAction action = run.getAction(EnforceBuildAction.class);
+                long bytes = new File(run.getRootDir(), "build.xml").length();
+                CoverageSummary summary = null;
+                if (null != publisher) {
+                    try {
+                        summary = backfill(run, publisher, throttle, listener);
+                    } catch (IOException exception) {
+                        LOGGER.log(Level.WARNING, "Unable to backfill the coverage of " + run.getFullDisplayName(),
+                                exception);
+                        progress.fail();
+                    }
+                }
+                actionsAdded |= null != summary && null == action;
+                CoverageSummary published = null != summary ? summary : null == action ? null : action.getSummary();
+                if (null != published) {
+                    entries.add(new CoverageHistory.Entry(run.getNumber(), run.getTimeInMillis(), published));
+                    if (visited < Constants.TEST_HISTORY_MAX_BUILDS) {
+                        collectTestResults(run, testResults, throttle);
+                    }
+                }
+                visited++;
+                progress.advance(jobName, next, null != summary, bytes);
+                throttle.acquire(bytes);
+                // the cursor is only saved once the histories have every build before it
+                if (visited % Constants.BACKFILL_SAVE_INTERVAL == 0) {
+                    recordHistories(job, entries, testResults, throttle);
+                    progress.checkpoint();
+                }
+            }
+            recordHistories(job, entries, testResults, throttle);
+            if (actionsAdded) {
+                updateRollup(job);
+            }
+        } catch (InterruptedException exception) {
+            progress.finish(jobName, false);
+            throw exception;
+        }
+        progress.finish(jobName, true);
+    }
+
+    /**
+     * Adds the coverage and the test results collected from old builds to the histories of the job, each file is
+     * rewritten once for all of them and the bytes written are charged to the throttle
+     */
+    private static void recordHistories(Job<?, ?> job, List<CoverageHistory.Entry> entries,
+                                        Map<Integer, TestHistory.Results> testResults, IoThrottle throttle)
+            throws InterruptedException {
+        if (!entries.isEmpty()) {
+            try {
+                if (CoverageHistory.of(job).appendAll(entries) > 0) {
+                    throttle.acquire(new File(job.getRootDir(), CoverageHistory.FILE_NAME).length());
+                }
+            } catch (IOException exception) {
+                LOGGER.log(Level.WARNING, "Unable to backfill the coverage history of " + job.getFullName(), exception);
+            }
+            entries.clear();
+        }
+        if (!testResults.isEmpty()) {
+            try {
+                if (TestHistory.of(job).appendAll(testResults) > 0) {
+                    throttle.acquire(new File(job.getRootDir(), TestHistory.FILE_NAME).length());
+                }
+            } catch (IOException exception) {
+                LOGGER.log(Level.WARNING, "Unable to backfill the test history of " + job.getFullName(), exception);
+            }
+            testResults.clear();
+        }
+    }
+
+    /**
+     * Collects the JUnit results of a build that is not in the test history of its job
+     */
+    private static void collectTestResults(Run<?, ?> run, Map<Integer, TestHistory.Results> testResults,
+                                           IoThrottle throttle) throws InterruptedException {
+        try {
+            if (TestHistory.of(run.getParent()).contains(run.getNumber())) {
+                return;
+            }
+        } catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Unable to read the test history of " + run.getParent().getFullName(), exception);
+            return;
+        }
+        throttle.acquire(new File(run.getRootDir(), "junitResult.xml").length());
+        TestHistory.Results results = TestHistory.getResults(run);
+        if (null != results) {
+            testResults.put(run.getNumber(), results);
+        }
+    }
+
+    /**
+     * Replaces the contribution of the job to its folders and views with the newest build that has coverage, which
+     * may have been backfilled before a restart or published by the job
+     */
+    private static void updateRollup(Job<?, ?> job) {
+        for (Run<?, ?> run = job.getLastCompletedBuild(); null != run; run = run.getPreviousBuild()) {
+            EnforceBuildAction action = run.getAction(EnforceBuildAction.class);
+            if (null != action && null != action.getSummary()) {
+                CoverageRollup.get().update(job, run.getNumber(), action.getSummary());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Backfills a build from the report in its archived artifacts
+     *
+     * @param run       the build
+     * @param publisher the publisher of the job, it has the report name and the coverage bands
+     * @param throttle  the throttle the bytes of the report are charged to
+     * @param listener  the listener of the backfill
+     * @return the coverage of the build or null if it has its stores already or it did not archive a report
+     */
+    private static CoverageSummary backfill(Run<?, ?> run, EnforcePublisher publisher, IoThrottle throttle,
+                                            TaskListener listener)
+            throws IOException, InterruptedException {
+        EnforceBuildAction action = run.getAction(EnforceBuildAction.class);
+        if (null != action && action.hasArchive()) {
+            return null;
+        }
+        // a report outside of the workspace is not in the archived artifacts
+        if (new File(publisher.getJsonFileName()).isAbsolute()) {
+            return null;
+        }
+        CoverageReport report;
+        try {
+            report = new CoverageReportCallable(publisher.getJsonFileName(), publisher.getBands())
+                    .invoke(run.getArtifactsDir(), null);
+        } catch (FileNotFoundException exception) {
+            return null;
+        }
+        throttle.acquire(report.getBytesRead());
+        if (null == report.getSummary()) {
+            return null;
+        }
+        listener.getLogger().println("Backfilling the coverage of " + run.getFullDisplayName());
+        EnforcePublisher.saveReportFiles(run, report, listener);
+        if (null == action) {
+            run.addAction(new EnforceBuildAction(report.getSummary(), report.getReports(), report.getFingerprint()));
+            run.save();
+            EnforceMacroCache.invalidate(run);
+        }
+        return report.getSummary();
+    }
+}
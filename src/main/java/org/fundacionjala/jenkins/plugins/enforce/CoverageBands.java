@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Represents the coverage bands (Danger, Risk, Acceptable and Safe) by the percentages where Risk, Acceptable and
+ * Safe start. The limits are compiled into a table of the 101 whole percentages, so finding the band of a
+ * percentage is a single lookup.
+ */
+public final class CoverageBands implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final CoverageBands DEFAULT = new CoverageBands(Constants.DEFAULT_COVERAGE_BAND_LIMITS);
+
+    private final int[] limits;
+    private transient byte[] bandByPercentage;
+    private transient String[] labels;
+
+    /**
+     * Creates the bands
+     *
+     * @param limits the percentages where Risk, Acceptable and Safe start, ascending from 1 to 100
+     * @throws IllegalArgumentException if the limits are not valid
+     */
+    public CoverageBands(int... limits) {
+        if (limits.length != Constants.COVERAGE_STATUS_NAMES.length - 1) {
+            throw new IllegalArgumentException("Expected " + (Constants.COVERAGE_STATUS_NAMES.length - 1) + " limits");
+        }
+        for (int i = 0; i < limits.length; i++) {
+            if (limits[i] < 1 || limits[i] > 100 || i > 0 && limits[i] <= limits[i - 1]) {
+                throw new IllegalArgumentException("The limits must be ascending from 1 to 100: " + Arrays.toString(limits));
+            }
+        }
+        this.limits = limits.clone();
+        compile();
+    }
+
+    private void compile() {
+        bandByPercentage = new byte[101];
+        int band = 0;
+        for (int percentage = 0; percentage <= 100; percentage++) {
+            while (band < limits.length && percentage >= limits[band]) {
+                band++;
+            }
+            bandByPercentage[percentage] = (byte) band;
+        }
+        labels = new String[limits.length + 1];
+        for (int i = 0; i < labels.length; i++) {
+            int from = i == 0 ? 0 : limits[i - 1];
+            int to = i == limits.length ? 100 : limits[i] - 1;
+            labels[i] = Constants.COVERAGE_STATUS_NAMES[i] + " (" + from + "% - " + to + "%)";
+        }
+    }
+
+    /**
+     * Compiles the table of bands read from a build file
+     */
+    private Object readResolve() {
+        compile();
+        return this;
+    }
+
+    /**
+     * Gets the band of a coverage percentage, 0 is Danger and 3 is Safe
+     */
+    public int getBand(double percentage) {
+        if (!(percentage > 0)) {
+            return bandByPercentage[0];
+        }
+        return bandByPercentage[percentage >= 100 ? 100 : (int) percentage];
+    }
+
+    public int getBandCount() {
+        return labels.length;
+    }
+
+    /**
+     * Gets the percentage where a band starts
+     */
+    public int getLowerLimit(int band) {
+        return band == 0 ? 0 : limits[band - 1];
+    }
+
+    public String getName(int band) {
+        return Constants.COVERAGE_STATUS_NAMES[band];
+    }
+
+    /**
+     * Gets the band name with its range, E.G. "Danger (0% - 74%)"
+     */
+    public String getLabel(int band) {
+        return labels[band];
+    }
+
+    public String getColor(int band) {
+        return Constants.COVERAGE_STATUS_COLORS[band];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof CoverageBands && Arrays.equals(limits, ((CoverageBands) other).limits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(limits);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(limits);
+    }
+}
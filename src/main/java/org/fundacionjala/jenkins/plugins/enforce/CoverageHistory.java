@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.model.Job;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the coverage trend of a job in an append-only binary file of fixed size records, so a trend over N builds
+ * costs one sequential read instead of N build loads. The file is never rebuilt from the builds when a page is
+ * rendered or a build is published, the builds that completed before it existed are added by the
+ * {@link CoverageBackfill}.
+ */
+public final class CoverageHistory {
+
+    static final String FILE_NAME = "enforce-coverage-history.bin";
+    private static final int MAGIC = 0x454E4648;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int BANDS = Constants.COVERAGE_STATUS_NAMES.length;
+    static final int RECORD_SIZE = 4 + 8 + 8 + 8 + 4 * BANDS;
+
+    private static final ConcurrentMap<String, CoverageHistory> HISTORIES = new ConcurrentHashMap<String, CoverageHistory>();
+
+    private final File file;
+    private long version;
+
+    CoverageHistory(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the coverage history of a job
+     *
+     * @param job the job that publishes coverage
+     * @return the history stored in the job directory, it is kept by job full name
+     */
+    public static CoverageHistory of(Job<?, ?> job) {
+        File file = new File(job.getRootDir(), FILE_NAME);
+        String key = job.getFullName();
+        CoverageHistory history = HISTORIES.get(key);
+        while (null == history || !history.file.equals(file)) {
+            CoverageHistory created = new CoverageHistory(file);
+            if (null == history ? null == HISTORIES.putIfAbsent(key, created) : HISTORIES.replace(key, history, created)) {
+                return created;
+            }
+            history = HISTORIES.get(key);
+        }
+        return history;
+    }
+
+    /**
+     * Drops the histories of a deleted or renamed job or of the jobs of a deleted or renamed folder
+     *
+     * @param fullName the former full name of the job or folder
+     */
+    static void forget(String fullName) {
+        for (Iterator<String> keys = HISTORIES.keySet().iterator(); keys.hasNext(); ) {
+            String key = keys.next();
+            if (key.equals(fullName) || key.startsWith(fullName + "/")) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Adds the coverage of a build, the file is only rewritten when the build is not the newest one. A missing file
+     * is created with the build alone, the older builds are added by the backfill.
+     *
+     * @param number    the build number
+     * @param timestamp the build timestamp
+     * @param summary   the coverage published by the build
+     */
+    public synchronized void append(int number, long timestamp, CoverageSummary summary) throws IOException {
+        Entry entry = new Entry(number, timestamp, summary);
+        version++;
+        if (!file.exists()) {
+            write(Collections.singletonList(entry));
+            return;
+        }
+        if (number > getLastBuildNumber()) {
+            RandomAccessFile output = new RandomAccessFile(file, "rw");
+            try {
+                output.seek(HEADER_SIZE + (output.length() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE);
+                output.write(toBytes(entry));
+            } finally {
+                output.close();
+            }
+        } else {
+            List<Entry> entries = readAll();
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                if (entries.get(i).getBuildNumber() == number) {
+                    entries.remove(i);
+                }
+            }
+            entries.add(entry);
+            Collections.sort(entries);
+            write(entries);
+        }
+    }
+
+    /**
+     * Adds the coverage of several old builds, the builds that are in the history already are kept and the file is
+     * rewritten once
+     *
+     * @param added the records of the builds, in any order
+     * @return the amount of builds added
+     */
+    public synchronized int appendAll(Collection<Entry> added) throws IOException {
+        List<Entry> entries = readAll();
+        Set<Integer> numbers = new HashSet<Integer>();
+        for (Entry entry : entries) {
+            numbers.add(entry.getBuildNumber());
+        }
+        int count = 0;
+        for (Entry entry : added) {
+            if (numbers.add(entry.getBuildNumber())) {
+                entries.add(entry);
+                count++;
+            }
+        }
+        if (count > 0) {
+            Collections.sort(entries);
+            write(entries);
+            version++;
+        }
+        return count;
+    }
+
+    /**
+     * Drops the record of a deleted build, the file is rewritten when it has the build
+     *
+     * @param number the deleted build number
+     */
+    public synchronized void remove(int number) throws IOException {
+        version++;
+        if (!file.exists()) {
+            return;
+        }
+        List<Entry> entries = readAll();
+        boolean found = false;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).getBuildNumber() == number) {
+                entries.remove(i);
+                found = true;
+            }
+        }
+        if (found) {
+            write(entries);
+        }
+    }
+
+    /**
+     * Gets a counter that changes every time a build is added or removed, it starts again when Jenkins restarts
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the newest records of the history, a job that has no history file yet has no records
+     *
+     * @param maxEntries maximum amount of records to read
+     * @return the records in build order, oldest first
+     */
+    public synchronized List<Entry> getEntries(int maxEntries) throws IOException {
+        return readLast(maxEntries);
+    }
+
+    private int getLastBuildNumber() throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            long records = (input.length() - HEADER_SIZE) / RECORD_SIZE;
+            if (records <= 0) {
+                return 0;
+            }
+            input.seek(HEADER_SIZE + (records - 1) * RECORD_SIZE);
+            return input.readInt();
+        } finally {
+            input.close();
+        }
+    }
+
+    private List<Entry> readAll() throws IOException {
+        return readLast(Integer.MAX_VALUE);
+    }
+
+    private List<Entry> readLast(int maxEntries) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>();
+        if (!file.exists()) {
+            return entries;
+        }
+        long records = (file.length() - HEADER_SIZE) / RECORD_SIZE;
+        long skipped = Math.max(0, records - maxEntries);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a coverage history file");
+            }
+            long toSkip = skipped * RECORD_SIZE;
+            while (toSkip > 0) {
+                long count = input.skip(toSkip);
+                if (count <= 0) {
+                    throw new EOFException();
+                }
+                toSkip -= count;
+            }
+            for (long i = skipped; i < records; i++) {
+                entries.add(readEntry(input));
+            }
+        } finally {
+            input.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the whole history to a temporary file that replaces the history file
+     */
+    void write(List<Entry> entries) throws IOException {
+        File temporary = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            for (Entry entry : entries) {
+                writeEntry(output, entry);
+            }
+        } finally {
+            output.close();
+        }
+        AtomicFiles.replace(temporary, file);
+    }
+
+    private static byte[] toBytes(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_SIZE);
+        DataOutputStream output = new DataOutputStream(bytes);
+        writeEntry(output, entry);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeEntry(DataOutputStream output, Entry entry) throws IOException {
+        CoverageSummary summary = entry.getSummary();
+        output.writeInt(entry.getBuildNumber());
+        output.writeLong(entry.getTimestamp());
+        output.writeLong(summary.getCoveredLines());
+        output.writeLong(summary.getUncoveredLines());
+        for (int band = 0; band < BANDS; band++) {
+            output.writeInt(summary.getFileCount(band));
+        }
+    }
+
+    private static Entry readEntry(DataInputStream input) throws IOException {
+        int number = input.readInt();
+        long timestamp = input.readLong();
+        long coveredLines = input.readLong();
+        long uncoveredLines = input.readLong();
+        int[] fileCounts = new int[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            fileCounts[band] = input.readInt();
+        }
+        return new Entry(number, timestamp, new CoverageSummary(coveredLines, uncoveredLines, fileCounts));
+    }
+
+    /**
+     * Represents the coverage of one build in the history
+     */
+    public static final class Entry implements Comparable<Entry> {
+
+        private final int buildNumber;
+        private final long timestamp;
+        private final CoverageSummary summary;
+
+        Entry(int buildNumber, long timestamp, CoverageSummary summary) {
+            this.buildNumber = buildNumber;
+            this.timestamp = timestamp;
+            this.summary = summary;
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public CoverageSummary getSummary() {
+            return summary;
+        }
+
+        /**
+         * Gets coverage percentage of the build
+         */
+        public double getPercentage() {
+            return summary.getPercentage();
+        }
+
+        public int compareTo(Entry other) {
+            return buildNumber < other.buildNumber ? -1 : buildNumber == other.buildNumber ? 0 : 1;
+        }
+    }
+}
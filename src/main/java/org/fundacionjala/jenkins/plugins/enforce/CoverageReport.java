@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.model.Run;
+import org.fundacionjala.jenkins.plugins.enforce.report.ClassCoverageIndex;
+import org.fundacionjala.jenkins.plugins.enforce.report.TestImpactIndex;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents what the agent sends back after parsing the coverage reports: the merged summary, the merged class
+ * coverage index and the compressed archive of the files when the reports have per file data, the classes covered by
+ * every test when the files list their tests, and the summary of every report.
+ */
+public final class CoverageReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CoverageSummary summary;
+    private final ClassCoverageIndex classIndex;
+    private TestImpactIndex testImpact;
+    private final List<ReportCoverage> reports;
+    private byte[] archive;
+    private final ReportFingerprint fingerprint;
+    private final boolean unchanged;
+    private transient Run<?, ?> reusedBuild;
+    private final int filesRead;
+    private final long bytesRead;
+    private final long parseTime;
+
+    public CoverageReport(CoverageSummary summary, ClassCoverageIndex classIndex) {
+        this(summary, classIndex, null, Collections.<ReportCoverage>emptyList(), null, null, 0, 0, 0);
+    }
+
+    /**
+     * Creates the coverage of the reports
+     *
+     * @param summary    the merged summary
+     * @param classIndex the merged class index
+     * @param testImpact the merged test impact index, it can be null
+     * @param reports    the coverage of every report
+     * @param archive    the {@link org.fundacionjala.jenkins.plugins.enforce.report.CoverageArchive} of the files, it can be null
+     * @param fingerprint the fingerprint of the reports, it can be null
+     * @param filesRead  amount of report files parsed
+     * @param bytesRead  size of the parsed reports
+     * @param parseTime  nanoseconds spent parsing and merging the reports on the node
+     */
+    public CoverageReport(CoverageSummary summary, ClassCoverageIndex classIndex, TestImpactIndex testImpact,
+                          List<ReportCoverage> reports, byte[] archive, ReportFingerprint fingerprint, int filesRead,
+                          long bytesRead, long parseTime) {
+        this(summary, classIndex, testImpact, reports, archive, fingerprint, false, filesRead, bytesRead, parseTime);
+    }
+
+    private CoverageReport(CoverageSummary summary, ClassCoverageIndex classIndex, TestImpactIndex testImpact,
+                           List<ReportCoverage> reports, byte[] archive, ReportFingerprint fingerprint, boolean unchanged, int filesRead,
+                           long bytesRead, long parseTime) {
+        this.summary = summary;
+        this.fingerprint = fingerprint;
+        this.unchanged = unchanged;
+        this.classIndex = classIndex;
+        this.testImpact = testImpact;
+        this.reports = reports;
+        this.archive = archive;
+        this.filesRead = filesRead;
+        this.bytesRead = bytesRead;
+        this.parseTime = parseTime;
+    }
+
+    /**
+     * Creates the answer of the node when the reports did not change since the previous build, they are not parsed
+     *
+     * @param fingerprint the fingerprint of the reports
+     * @param filesRead   amount of report files hashed
+     * @param bytesRead   size of the hashed reports
+     * @param parseTime   nanoseconds spent comparing the reports on the node
+     */
+    public static CoverageReport unchanged(ReportFingerprint fingerprint, int filesRead, long bytesRead, long parseTime) {
+        return new CoverageReport(null, null, null, Collections.<ReportCoverage>emptyList(), null, fingerprint, true,
+                filesRead, bytesRead, parseTime);
+    }
+
+    /**
+     * Creates the coverage of a build from the coverage of the previous build, whose reports had the same content
+     *
+     * @param fingerprint the fingerprint of the reports
+     * @param build       the previous build
+     * @param action      the coverage of the previous build
+     */
+    static CoverageReport reuse(ReportFingerprint fingerprint, Run<?, ?> build, EnforceBuildAction action)
+            throws IOException, InterruptedException {
+        CoverageReport report = new CoverageReport(action.getSummary(), action.getClassIndex(), null,
+                action.getReports(), null, fingerprint, false, 0, 0, 0);
+        report.reusedBuild = build;
+        return report;
+    }
+
+    public CoverageSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Gets the coverage per class
+     *
+     * @return the index or null if the report does not have per file data
+     */
+    public ClassCoverageIndex getClassIndex() {
+        return classIndex;
+    }
+
+    /**
+     * Takes the classes covered by every test, it is only kept until the publisher writes it in the build directory
+     *
+     * @return the index or null if the files did not list their tests or it was already taken
+     */
+    public synchronized TestImpactIndex takeTestImpact() {
+        TestImpactIndex result = testImpact;
+        testImpact = null;
+        return result;
+    }
+
+    /**
+     * Gets the coverage of every report that has coverage data
+     */
+    public List<ReportCoverage> getReports() {
+        return reports;
+    }
+
+    /**
+     * Takes the archive of the files, it is only kept until the publisher writes it in the build directory
+     *
+     * @return the archive bytes or null if the reports did not have per file data or it was already taken
+     */
+    public synchronized byte[] takeArchive() {
+        byte[] result = archive;
+        archive = null;
+        return result;
+    }
+
+    public ReportFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Verifies if the node found the same reports as in the previous build, then it does not send their coverage
+     */
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Gets the build whose coverage was reused because its reports had the same content
+     *
+     * @return the build or null if the reports were parsed
+     */
+    public Run<?, ?> getReusedBuild() {
+        return reusedBuild;
+    }
+
+    public int getFilesRead() {
+        return filesRead;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Gets the nanoseconds spent parsing and merging the reports on the node
+     */
+    public long getParseTime() {
+        return parseTime;
+    }
+}
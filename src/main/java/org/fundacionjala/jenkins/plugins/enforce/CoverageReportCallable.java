@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.fundacionjala.jenkins.plugins.enforce.report.ClassCoverageIndex;
+import org.fundacionjala.jenkins.plugins.enforce.report.CompositeReportHandler;
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageArchive;
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageReportHandler;
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageReportParser;
+import org.fundacionjala.jenkins.plugins.enforce.report.TestImpactIndex;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the coverage reports that match an Ant style pattern on the node that has the workspace. The reports are
+ * parsed in parallel and merged there, only the summaries, the class index, the test impact index and the compressed
+ * archive of the files are sent back to the master. A class listed by more than one report keeps the coverage of the
+ * last report that lists it, in the order of the report paths.
+ */
+public class CoverageReportCallable extends MasterToSlaveFileCallable<CoverageReport> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String includes;
+    private final CoverageBands bands;
+    private final ReportFingerprint previous;
+
+    /**
+     * Creates the callable
+     *
+     * @param includes the report path relative to the workspace, an absolute path or an Ant style pattern, E.G. "**&#47;coverage.json"
+     * @param bands    the coverage bands the files are classified with
+     */
+    public CoverageReportCallable(String includes, CoverageBands bands) {
+        this(includes, bands, null);
+    }
+
+    /**
+     * Creates a callable that does not parse the reports when they did not change since the previous build
+     *
+     * @param includes the report path relative to the workspace, an absolute path or an Ant style pattern, E.G. "**&#47;coverage.json"
+     * @param bands    the coverage bands the files are classified with
+     * @param previous the fingerprint of the reports of the previous build, it can be null
+     */
+    public CoverageReportCallable(String includes, CoverageBands bands, ReportFingerprint previous) {
+        this.includes = includes;
+        this.bands = bands;
+        this.previous = previous;
+    }
+
+    /**
+     * Parses the reports
+     *
+     * @param workspace the workspace
+     * @param channel   the channel to the master
+     * @return the merged coverage of the reports, its summary is null if none of them has coverage data or they did
+     * not change since the previous build
+     * @throws FileNotFoundException if no report matches
+     */
+    public CoverageReport invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<String> paths = findReports(workspace);
+        if (paths.isEmpty()) {
+            throw new FileNotFoundException(ReportFingerprint.resolve(workspace, includes).getPath()
+                    + " was not found");
+        }
+        if (null != previous && previous.hasSameFiles(workspace, paths)) {
+            return CoverageReport.unchanged(previous, 0, 0, System.nanoTime() - start);
+        }
+        // a report rewritten with the same size is hashed without parsing it, it is parsed only if its content changed
+        if (null != previous && previous.hasSameSizes(workspace, paths)) {
+            ReportFingerprint current = ReportFingerprint.hash(workspace, paths);
+            if (current.hasSameContent(previous)) {
+                return CoverageReport.unchanged(current, paths.size(), getSize(workspace, paths),
+                        System.nanoTime() - start);
+            }
+        }
+
+        List<CoverageArchive.Builder> archives = new ArrayList<CoverageArchive.Builder>(paths.size());
+        List<TestImpactIndex.Builder> testImpacts = new ArrayList<TestImpactIndex.Builder>(paths.size());
+        List<CoverageReportHandler> handlers = new ArrayList<CoverageReportHandler>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            archives.add(new CoverageArchive.Builder());
+            testImpacts.add(new TestImpactIndex.Builder());
+            handlers.add(new CompositeReportHandler(archives.get(i), testImpacts.get(i)));
+        }
+        List<CoverageReport> reports = paths.size() == 1
+                ? Collections.singletonList(parse(workspace, paths.get(0), bands, handlers.get(0)))
+                : parseInParallel(workspace, paths, bands, handlers);
+
+        List<CoverageSummary> summaries = new ArrayList<CoverageSummary>();
+        List<ClassCoverageIndex> classIndexes = new ArrayList<ClassCoverageIndex>();
+        List<ReportCoverage> reportCoverages = new ArrayList<ReportCoverage>();
+        List<ReportFingerprint> fingerprints = new ArrayList<ReportFingerprint>();
+        for (int i = 0; i < reports.size(); i++) {
+            CoverageReport report = reports.get(i);
+            fingerprints.add(report.getFingerprint());
+            if (null != report.getSummary()) {
+                summaries.add(report.getSummary());
+                reportCoverages.add(new ReportCoverage(paths.get(i), report.getSummary()));
+            }
+            if (null != report.getClassIndex()) {
+                classIndexes.add(report.getClassIndex());
+            }
+        }
+        ReportFingerprint fingerprint = ReportFingerprint.merge(fingerprints);
+        CoverageArchive.Builder archive = archives.get(0);
+        TestImpactIndex.Builder testImpact = testImpacts.get(0);
+        for (int i = 1; i < archives.size(); i++) {
+            archive.addAll(archives.get(i));
+            testImpact.addAll(testImpacts.get(i));
+        }
+        return new CoverageReport(CoverageSummary.merge(summaries, ClassCoverageIndex.getReplaced(classIndexes)),
+                ClassCoverageIndex.merge(classIndexes), testImpact.build(), reportCoverages, archive.isEmpty() ? null : archive.build(), fingerprint,
+                paths.size(), getSize(workspace, paths), System.nanoTime() - start);
+    }
+
+    private static long getSize(File workspace, List<String> paths) {
+        long size = 0;
+        for (String path : paths) {
+            size += ReportFingerprint.resolve(workspace, path).length();
+        }
+        return size;
+    }
+
+    private List<String> findReports(File workspace) {
+        List<String> paths = new ArrayList<String>();
+        if (includes.indexOf('*') < 0 && includes.indexOf('?') < 0 && includes.indexOf(',') < 0) {
+            if (ReportFingerprint.resolve(workspace, includes).isFile()) {
+                paths.add(includes);
+            }
+            return paths;
+        }
+        if (!workspace.isDirectory()) {
+            return paths;
+        }
+        for (String path : Util.createFileSet(workspace, includes).getDirectoryScanner().getIncludedFiles()) {
+            paths.add(path.replace(File.separatorChar, '/'));
+        }
+        // the reports are merged in the order of their paths, so the report that wins a class is always the same
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static CoverageReport parse(File workspace, String path, CoverageBands bands, CoverageReportHandler handler)
+            throws IOException {
+        ClassCoverageIndex.Builder classIndex = new ClassCoverageIndex.Builder();
+        File file = ReportFingerprint.resolve(workspace, path);
+        MessageDigest digest = ReportFingerprint.newDigest();
+        InputStream input = new DigestInputStream(new FileInputStream(file), digest);
+        CoverageSummary summary;
+        try {
+            summary = new CoverageReportParser(new CompositeReportHandler(classIndex, handler), bands)
+                    .parse(new BufferedReader(new InputStreamReader(input, UTF_8)));
+            // the rest of the file after the JSON object is also part of its fingerprint
+            byte[] buffer = new byte[8192];
+            int read = input.read(buffer);
+            while (read >= 0) {
+                read = input.read(buffer);
+            }
+        } finally {
+            input.close();
+        }
+        ReportFingerprint fingerprint = new ReportFingerprint(path, file, ReportFingerprint.toHex(digest.digest()));
+        return new CoverageReport(summary, classIndex.build(), null, Collections.<ReportCoverage>emptyList(), null,
+                fingerprint, 1, file.length(), 0);
+    }
+
+    /**
+     * Parses every report in a fork join pool, so the reports are read in about the time of the slowest one
+     */
+    private static List<CoverageReport> parseInParallel(final File workspace, List<String> paths, final CoverageBands bands,
+                                                        List<CoverageReportHandler> handlers)
+            throws IOException, InterruptedException {
+        List<Callable<CoverageReport>> tasks = new ArrayList<Callable<CoverageReport>>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            final String path = paths.get(i);
+            final CoverageReportHandler handler = handlers.get(i);
+            tasks.add(new Callable<CoverageReport>() {
+                public CoverageReport call() throws IOException {
+                    return parse(workspace, path, bands, handler);
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(paths.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<CoverageReport>> futures = pool.invokeAll(tasks);
+            List<CoverageReport> reports = new ArrayList<CoverageReport>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    reports.add(futures.get(i).get());
+                } catch (ExecutionException exception) {
+                    throw new IOException("Unable to parse " + paths.get(i), exception.getCause());
+                }
+            }
+            return reports;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TopLevelItem;
+import hudson.model.View;
+import hudson.model.ViewGroup;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the coverage of every folder and view as running totals of the last coverage published by their jobs.
+ * A build replaces the contribution of its job in the folders and views that contain the job when it completes, so
+ * reading the coverage of a folder or a view does not depend on the number of jobs.
+ * <p>
+ * The contributions are stored in the Jenkins root directory, the updates of the builds are saved every
+ * {@link Constants#ROLLUP_SAVE_INTERVAL} builds and before Jenkins shuts down. The views a job belongs to are found
+ * when the job publishes, so a view that changes its jobs is up to date after their next builds.
+ */
+public final class CoverageRollup {
+
+    static final String FILE_NAME = "enforce-coverage-rollup.xml";
+    private static final Logger LOGGER = Logger.getLogger(CoverageRollup.class.getName());
+    private static CoverageRollup instance;
+
+    private Map<String, Contribution> jobs = new HashMap<String, Contribution>();
+    private Map<String, Aggregate> scopes = new HashMap<String, Aggregate>();
+    private transient XmlFile file;
+    private transient int unsavedUpdates;
+
+    private CoverageRollup() {
+    }
+
+    /**
+     * Creates an empty rollup stored in a file
+     *
+     * @param file the rollup file
+     */
+    CoverageRollup(XmlFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the rollup of the Jenkins instance, it is read from its file the first time
+     */
+    public static synchronized CoverageRollup get() {
+        if (null == instance) {
+            XmlFile file = new XmlFile(new File(Jenkins.getInstance().getRootDir(), FILE_NAME));
+            CoverageRollup rollup = null;
+            if (file.exists()) {
+                try {
+                    rollup = (CoverageRollup) file.read();
+                } catch (IOException exception) {
+                    LOGGER.log(Level.WARNING, "Unable to read the coverage rollup, it starts empty", exception);
+                }
+            }
+            instance = null == rollup ? new CoverageRollup() : rollup;
+            instance.file = file;
+        }
+        return instance;
+    }
+
+    /**
+     * Saves the updates not saved yet of the rollup of the Jenkins instance, E.G. before Jenkins shuts down
+     */
+    public static synchronized void flushInstance() {
+        if (null != instance) {
+            instance.flush();
+        }
+    }
+
+    /**
+     * Gets the key of the folder scope, it includes the jobs of its subfolders
+     */
+    static String getKey(ItemGroup<?> group) {
+        return "items:" + group.getUrl();
+    }
+
+    /**
+     * Gets the key of the view scope
+     */
+    static String getKey(View view) {
+        return "view:" + view.getOwner().getUrl() + view.getViewName();
+    }
+
+    /**
+     * Replaces the contribution of a job with the coverage of its newest build. The file is saved every few
+     * updates, the rest are saved by {@link #flush()}.
+     *
+     * @param job     the job of the build
+     * @param number  the build number
+     * @param summary the coverage published by the build
+     */
+    public void update(Job<?, ?> job, int number, CoverageSummary summary) {
+        update(job.getFullName(), findScopes(job), number, summary);
+    }
+
+    /**
+     * Replaces the contribution of a job unless it comes from a newer build
+     *
+     * @param fullName the full name of the job
+     * @param keys     the keys of the folders and views that contain the job
+     * @param number   the build number
+     * @param summary  the coverage published by the build
+     */
+    synchronized void update(String fullName, List<String> keys, int number, CoverageSummary summary) {
+        Contribution previous = jobs.get(fullName);
+        if (null != previous && previous.buildNumber > number) {
+            return;
+        }
+        remove(fullName);
+        add(fullName, new Contribution(number, summary, keys));
+        if (++unsavedUpdates >= Constants.ROLLUP_SAVE_INTERVAL) {
+            save();
+        }
+    }
+
+    /**
+     * Replaces the contribution of a deleted build with the newest older build of its job that published coverage
+     *
+     * @param run the deleted build
+     */
+    public void onDeleted(Run<?, ?> run) {
+        Job<?, ?> job = run.getParent();
+        if (getBuildNumber(job) != run.getNumber()) {
+            return;
+        }
+        Run<?, ?> previous = run.getPreviousBuild();
+        for (int i = 0; null != previous && i < Constants.MAX_BASELINE_LOOKUP; i++) {
+            EnforceBuildAction action = previous.getAction(EnforceBuildAction.class);
+            if (null != action && null != action.getSummary()) {
+                replaceDeleted(job.getFullName(), run.getNumber(), findScopes(job), previous.getNumber(),
+                        action.getSummary());
+                return;
+            }
+            previous = previous.getPreviousBuild();
+        }
+        replaceDeleted(job.getFullName(), run.getNumber(), null, 0, null);
+    }
+
+    /**
+     * Replaces the contribution of a deleted build, if it still is the contribution of its job
+     *
+     * @param fullName      the full name of the job
+     * @param deletedNumber the number of the deleted build
+     * @param keys          the keys of the folders and views that contain the job
+     * @param number        the number of the build that replaces it
+     * @param summary       the coverage of the build that replaces it, null drops the contribution of the job
+     */
+    synchronized void replaceDeleted(String fullName, int deletedNumber, List<String> keys, int number,
+                                     CoverageSummary summary) {
+        Contribution contribution = jobs.get(fullName);
+        if (null == contribution || contribution.buildNumber != deletedNumber) {
+            return;
+        }
+        remove(fullName);
+        if (null != summary) {
+            add(fullName, new Contribution(number, summary, keys));
+        }
+        save();
+    }
+
+    /**
+     * Drops the contribution of a job, E.G. when it is deleted
+     *
+     * @param fullName the full name of the job
+     */
+    public synchronized void removeJob(String fullName) {
+        if (null != remove(fullName)) {
+            save();
+        }
+    }
+
+    /**
+     * Drops the contributions of the jobs of a deleted folder
+     *
+     * @param prefix the full name of the folder followed by "/"
+     */
+    public synchronized void removeJobs(String prefix) {
+        List<String> names = new ArrayList<String>();
+        for (String fullName : jobs.keySet()) {
+            if (fullName.startsWith(prefix)) {
+                names.add(fullName);
+            }
+        }
+        for (String fullName : names) {
+            remove(fullName);
+        }
+        if (!names.isEmpty()) {
+            save();
+        }
+    }
+
+    /**
+     * Moves the contribution of a renamed or moved job to the folders and views that contain it now
+     */
+    public void move(Job<?, ?> job, String oldFullName) {
+        move(oldFullName, job.getFullName(), findScopes(job));
+    }
+
+    /**
+     * Moves the contribution of a job to its new name and scopes
+     *
+     * @param oldFullName the full name the job had
+     * @param fullName    the full name of the job
+     * @param keys        the keys of the folders and views that contain the job now
+     */
+    synchronized void move(String oldFullName, String fullName, List<String> keys) {
+        Contribution contribution = remove(oldFullName);
+        if (null != contribution) {
+            add(fullName, contribution.withScopes(keys));
+            save();
+        }
+    }
+
+    /**
+     * Saves the updates that were not saved yet
+     */
+    public synchronized void flush() {
+        if (unsavedUpdates > 0) {
+            save();
+        }
+    }
+
+    /**
+     * Gets the build number that gave the contribution of a job
+     *
+     * @return the build number or 0 if the job does not contribute
+     */
+    public int getBuildNumber(Job<?, ?> job) {
+        return getBuildNumber(job.getFullName());
+    }
+
+    synchronized int getBuildNumber(String fullName) {
+        Contribution contribution = jobs.get(fullName);
+        return null == contribution ? 0 : contribution.buildNumber;
+    }
+
+    /**
+     * Gets the coverage of a folder or the Jenkins root, including the jobs of its subfolders
+     *
+     * @return a copy of the totals or null if none of its jobs published coverage
+     */
+    public Aggregate getAggregate(ItemGroup<?> group) {
+        return getAggregate(getKey(group));
+    }
+
+    /**
+     * Gets the coverage of the jobs of a view
+     *
+     * @return a copy of the totals or null if none of its jobs published coverage
+     */
+    public Aggregate getAggregate(View view) {
+        return getAggregate(getKey(view));
+    }
+
+    /**
+     * Gets the coverage of a scope by its key
+     *
+     * @return a copy of the totals or null if none of its jobs published coverage
+     */
+    synchronized Aggregate getAggregate(String key) {
+        return copy(scopes.get(key));
+    }
+
+    /**
+     * Gets the coverage of a scope without some of its jobs, E.G. the jobs a user cannot read
+     *
+     * @param key      the key of the scope
+     * @param excluded the full names of the jobs that are not counted
+     * @return a copy of the totals or null if none of the other jobs published coverage
+     */
+    synchronized Aggregate getAggregate(String key, Collection<String> excluded) {
+        Aggregate aggregate = copy(scopes.get(key));
+        for (String fullName : excluded) {
+            Contribution contribution = jobs.get(fullName);
+            if (null != aggregate && null != contribution && contribution.scopes.contains(key)) {
+                aggregate.add(contribution, -1);
+            }
+        }
+        return null == aggregate || aggregate.jobs <= 0 ? null : aggregate;
+    }
+
+    /**
+     * Gets the full names of the jobs that contribute to a scope
+     */
+    synchronized List<String> getJobNames(String key) {
+        List<String> names = new ArrayList<String>();
+        for (Map.Entry<String, Contribution> entry : jobs.entrySet()) {
+            if (entry.getValue().scopes.contains(key)) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
+    private static Aggregate copy(Aggregate aggregate) {
+        return null == aggregate ? null : new Aggregate(aggregate);
+    }
+
+    private void add(String fullName, Contribution contribution) {
+        jobs.put(fullName, contribution);
+        for (String scope : contribution.scopes) {
+            Aggregate aggregate = scopes.get(scope);
+            if (null == aggregate) {
+                aggregate = new Aggregate();
+                scopes.put(scope, aggregate);
+            }
+            aggregate.add(contribution, 1);
+        }
+    }
+
+    private Contribution remove(String fullName) {
+        Contribution contribution = jobs.remove(fullName);
+        if (null == contribution) {
+            return null;
+        }
+        for (String scope : contribution.scopes) {
+            Aggregate aggregate = scopes.get(scope);
+            if (null != aggregate) {
+                aggregate.add(contribution, -1);
+                if (aggregate.jobs <= 0) {
+                    scopes.remove(scope);
+                }
+            }
+        }
+        return contribution;
+    }
+
+    /**
+     * Finds the folders above a job and the views of those folders that show the job or one of its folders
+     */
+    private static List<String> findScopes(Job<?, ?> job) {
+        List<String> keys = new ArrayList<String>();
+        Item child = job;
+        ItemGroup<?> group = job.getParent();
+        while (null != group) {
+            keys.add(getKey(group));
+            if (group instanceof ViewGroup) {
+                for (View view : ((ViewGroup) group).getViews()) {
+                    if (contains(view, child) || child != job && contains(view, job)) {
+                        keys.add(getKey(view));
+                    }
+                }
+            }
+            if (!(group instanceof Item)) {
+                break;
+            }
+            child = (Item) group;
+            group = child.getParent();
+        }
+        return keys;
+    }
+
+    private static boolean contains(View view, Item item) {
+        try {
+            return item instanceof TopLevelItem && view.contains((TopLevelItem) item);
+        } catch (RuntimeException exception) {
+            LOGGER.log(Level.FINE, "Unable to check the jobs of the view " + view.getViewName(), exception);
+            return false;
+        }
+    }
+
+    private void save() {
+        unsavedUpdates = 0;
+        try {
+            file.write(this);
+        } catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Unable to save the coverage rollup", exception);
+        }
+    }
+
+    private Object readResolve() {
+        if (null == jobs) {
+            jobs = new HashMap<String, Contribution>();
+        }
+        if (null == scopes) {
+            scopes = new HashMap<String, Aggregate>();
+        }
+        return this;
+    }
+
+    /**
+     * The coverage a job adds to its folders and views
+     */
+    static final class Contribution {
+
+        private final int buildNumber;
+        private final long coveredLines;
+        private final long uncoveredLines;
+        private final int band;
+        private final int[] fileCounts;
+        private final List<String> scopes;
+
+        Contribution(int buildNumber, CoverageSummary summary, List<String> scopes) {
+            this(buildNumber, summary.getCoveredLines(), summary.getUncoveredLines(),
+                    summary.getBands().getBand(summary.getPercentage()), fileCounts(summary), scopes);
+        }
+
+        private Contribution(int buildNumber, long coveredLines, long uncoveredLines, int band, int[] fileCounts,
+                             List<String> scopes) {
+            this.buildNumber = buildNumber;
+            this.coveredLines = coveredLines;
+            this.uncoveredLines = uncoveredLines;
+            this.band = band;
+            this.fileCounts = fileCounts;
+            this.scopes = scopes;
+        }
+
+        private static int[] fileCounts(CoverageSummary summary) {
+            int[] fileCounts = new int[summary.getBandCount()];
+            for (int band = 0; band < fileCounts.length; band++) {
+                fileCounts[band] = summary.getFileCount(band);
+            }
+            return fileCounts;
+        }
+
+        Contribution withScopes(List<String> scopes) {
+            return new Contribution(buildNumber, coveredLines, uncoveredLines, band, fileCounts, scopes);
+        }
+    }
+
+    /**
+     * The running totals of the jobs of a folder or a view
+     */
+    public static final class Aggregate {
+
+        private int jobs;
+        private long coveredLines;
+        private long uncoveredLines;
+        private final int[] fileCounts;
+        private final int[] jobCounts;
+
+        Aggregate() {
+            fileCounts = new int[Constants.COVERAGE_STATUS_NAMES.length];
+            jobCounts = new int[Constants.COVERAGE_STATUS_NAMES.length];
+        }
+
+        Aggregate(Aggregate other) {
+            jobs = other.jobs;
+            coveredLines = other.coveredLines;
+            uncoveredLines = other.uncoveredLines;
+            fileCounts = other.fileCounts.clone();
+            jobCounts = other.jobCounts.clone();
+        }
+
+        void add(Contribution contribution, int sign) {
+            jobs += sign;
+            coveredLines += sign * contribution.coveredLines;
+            uncoveredLines += sign * contribution.uncoveredLines;
+            for (int band = 0; band < fileCounts.length && band < contribution.fileCounts.length; band++) {
+                fileCounts[band] += sign * contribution.fileCounts[band];
+            }
+            jobCounts[contribution.band] += sign;
+        }
+
+        public int getJobs() {
+            return jobs;
+        }
+
+        public long getCoveredLines() {
+            return coveredLines;
+        }
+
+        public long getUncoveredLines() {
+            return uncoveredLines;
+        }
+
+        /**
+         * Gets the coverage of the lines of every job, rounded to two decimals
+         */
+        public double getPercentage() {
+            long lines = coveredLines + uncoveredLines;
+            return lines == 0 ? 0 : CoverageSummary.round(coveredLines * 100.0 / lines, 2);
+        }
+
+        /**
+         * Gets the color of the default band of the coverage
+         */
+        public String getColor() {
+            return CoverageBands.DEFAULT.getColor(CoverageBands.DEFAULT.getBand(getPercentage()));
+        }
+
+        /**
+         * Gets the number of files of a band, each job classifies its files with its own bands
+         */
+        public int getFileCount(int band) {
+            return fileCounts[band];
+        }
+
+        /**
+         * Gets the number of jobs whose coverage is in a band
+         */
+        public int getJobCount(int band) {
+            return jobCounts[band];
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import com.google.gson.stream.JsonWriter;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.TransientViewActionFactory;
+import hudson.model.View;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows the coverage of the jobs of a view and of the folder that owns it, read from the running totals of
+ * {@link CoverageRollup}. Only the jobs the user can read are counted: the totals of an administrator are read as they
+ * are and the jobs another user cannot read are taken out of them.
+ */
+public class CoverageRollupAction implements Action {
+
+    private final View view;
+
+    public CoverageRollupAction(View view) {
+        this.view = view;
+    }
+
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * Gets the coverage of the jobs of the view
+     *
+     * @return the totals or null if none of its jobs published coverage
+     */
+    public CoverageRollup.Aggregate getViewAggregate() {
+        return getReadableAggregate(CoverageRollup.getKey(view));
+    }
+
+    /**
+     * Gets the coverage of the folder that owns the view, including its subfolders
+     *
+     * @return the totals or null if none of its jobs published coverage
+     */
+    public CoverageRollup.Aggregate getFolderAggregate() {
+        ItemGroup<?> group = view.getOwnerItemGroup();
+        return null == group ? null : getReadableAggregate(CoverageRollup.getKey(group));
+    }
+
+    private static CoverageRollup.Aggregate getReadableAggregate(String key) {
+        CoverageRollup rollup = CoverageRollup.get();
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins.hasPermission(Jenkins.ADMINISTER)) {
+            return rollup.getAggregate(key);
+        }
+        List<String> hidden = new ArrayList<String>();
+        for (String fullName : rollup.getJobNames(key)) {
+            Job<?, ?> job = jenkins.getItemByFullName(fullName, Job.class);
+            if (null == job || !job.hasPermission(Item.READ)) {
+                hidden.add(fullName);
+            }
+        }
+        return rollup.getAggregate(key, hidden);
+    }
+
+    public String[] getStatusNames() {
+        return Constants.COVERAGE_STATUS_NAMES.clone();
+    }
+
+    /**
+     * Writes the coverage of the view and its folder as JSON
+     */
+    public void doSummary(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException {
+        staplerResponse.setContentType("application/json;charset=UTF-8");
+        JsonWriter json = new JsonWriter(staplerResponse.getWriter());
+        json.beginObject();
+        writeAggregate(json.name("view"), getViewAggregate());
+        writeAggregate(json.name("folder"), getFolderAggregate());
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeAggregate(JsonWriter json, CoverageRollup.Aggregate aggregate) throws IOException {
+        if (null == aggregate) {
+            json.nullValue();
+            return;
+        }
+        json.beginObject();
+        json.name("jobs").value(aggregate.getJobs());
+        json.name("percentage").value(aggregate.getPercentage());
+        json.name("coveredLines").value(aggregate.getCoveredLines());
+        json.name("uncoveredLines").value(aggregate.getUncoveredLines());
+        json.name("bands").beginArray();
+        for (int band = 0; band < Constants.COVERAGE_STATUS_NAMES.length; band++) {
+            json.beginObject();
+            json.name("name").value(Constants.COVERAGE_STATUS_NAMES[band]);
+            json.name("jobs").value(aggregate.getJobCount(band));
+            json.name("files").value(aggregate.getFileCount(band));
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    public String getIconFileName() {
+        return Constants.ROLLUP_ICON_FILE_NAME;
+    }
+
+    public String getDisplayName() {
+        return Constants.ROLLUP_DISPLAY_NAME;
+    }
+
+    public String getUrlName() {
+        return Constants.ROLLUP_URL_NAME;
+    }
+
+    /**
+     * Adds the coverage page to every view
+     */
+    @Extension
+    public static class Factory extends TransientViewActionFactory {
+
+        @Override
+        public List<Action> createFor(View view) {
+            return Collections.<Action>singletonList(new CoverageRollupAction(view));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.fundacionjala.jenkins.plugins.enforce.report.ClassCoverageIndex;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents the aggregated coverage of a build: covered and uncovered lines plus the amount of files per band,
+ * with the coverage bands the build was published with.
+ * The percentage, its band and the rendered status are computed once, so reading them does not allocate.
+ */
+public final class CoverageSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final long coveredLines;
+    private final long uncoveredLines;
+    private final int[] fileCounts;
+    private final CoverageBands bands;
+    private final String title;
+    private transient double percentage;
+    private transient double roundedPercentage;
+    private transient int band;
+    private transient String fileCoverageStatus;
+
+    /**
+     * Creates a coverage summary
+     *
+     * @param coveredLines   amount of covered lines
+     * @param uncoveredLines amount of uncovered lines
+     * @param fileCounts     amount of files per band (Danger, Risk, Acceptable, Safe) of the default bands
+     */
+    public CoverageSummary(long coveredLines, long uncoveredLines, int[] fileCounts) {
+        this(coveredLines, uncoveredLines, fileCounts, CoverageBands.DEFAULT);
+    }
+
+    /**
+     * Creates a coverage summary
+     *
+     * @param coveredLines   amount of covered lines
+     * @param uncoveredLines amount of uncovered lines
+     * @param fileCounts     amount of files per band (Danger, Risk, Acceptable, Safe)
+     * @param bands          the bands the files were classified with
+     */
+    public CoverageSummary(long coveredLines, long uncoveredLines, int[] fileCounts, CoverageBands bands) {
+        this(coveredLines, uncoveredLines, fileCounts, bands, null);
+    }
+
+    /**
+     * Creates a coverage summary
+     *
+     * @param coveredLines   amount of covered lines
+     * @param uncoveredLines amount of uncovered lines
+     * @param fileCounts     amount of files per band (Danger, Risk, Acceptable, Safe)
+     * @param bands          the bands the files were classified with
+     * @param title          the title of the report, it can be null
+     */
+    public CoverageSummary(long coveredLines, long uncoveredLines, int[] fileCounts, CoverageBands bands,
+                           String title) {
+        this.coveredLines = coveredLines;
+        this.uncoveredLines = uncoveredLines;
+        this.fileCounts = Arrays.copyOf(fileCounts, bands.getBandCount());
+        this.bands = bands;
+        this.title = title;
+        computeStatus();
+    }
+
+    private void computeStatus() {
+        long totalLines = coveredLines + uncoveredLines;
+        percentage = totalLines != 0 ? coveredLines * 100.0 / totalLines : 0;
+        roundedPercentage = round(percentage, 2);
+        band = bands.getBand(percentage);
+        StringBuilder status = new StringBuilder();
+        for (int i = 0; i < fileCounts.length; i++) {
+            status.append(bands.getLabel(i)).append(" = ").append(fileCounts[i]).append(" files. ");
+        }
+        fileCoverageStatus = status.toString();
+    }
+
+    /**
+     * Computes the transient values of a summary read from a build file, builds published before the bands were
+     * configurable use the default bands
+     */
+    private Object readResolve() {
+        if (null == bands) {
+            return new CoverageSummary(coveredLines, uncoveredLines, fileCounts, CoverageBands.DEFAULT, title);
+        }
+        computeStatus();
+        return this;
+    }
+
+    public long getCoveredLines() {
+        return coveredLines;
+    }
+
+    public long getUncoveredLines() {
+        return uncoveredLines;
+    }
+
+    public int getFileCount(int band) {
+        return fileCounts[band];
+    }
+
+    public int getBandCount() {
+        return fileCounts.length;
+    }
+
+    public CoverageBands getBands() {
+        return bands;
+    }
+
+    /**
+     * Gets the title of the report, it is empty when the report has no title
+     */
+    public String getTitle() {
+        return null == title ? "" : title;
+    }
+
+    /**
+     * Gets coverage percentage
+     */
+    public double getPercentage() {
+        return percentage;
+    }
+
+    /**
+     * Gets coverage percentage rounded to two decimals
+     */
+    public double getRoundedPercentage() {
+        return roundedPercentage;
+    }
+
+    /**
+     * Gets the band of the coverage percentage, 0 is Danger and 3 is Safe
+     */
+    public int getBand() {
+        return band;
+    }
+
+    /**
+     * Gets the coverage status name (Danger, Risk, Acceptable or Safe)
+     */
+    public String getStatus() {
+        return bands.getName(band);
+    }
+
+    /**
+     * Gets the color of the coverage band
+     */
+    public String getColor() {
+        return bands.getColor(band);
+    }
+
+    /**
+     * Gets the amount of files per band as "label = count files. " entries
+     */
+    public String getFileCoverageStatus() {
+        return fileCoverageStatus;
+    }
+
+    /**
+     * Merges the coverage of several reports, the title is the first title found
+     *
+     * @param summaries the summaries of the reports
+     * @return the sum of the summaries or null if there are no summaries
+     */
+    public static CoverageSummary merge(List<CoverageSummary> summaries) {
+        return merge(summaries, null);
+    }
+
+    /**
+     * Merges the coverage of several reports without the classes a later report lists again, so a class keeps the
+     * coverage of the last report that lists it as in the class index and the archive of the build
+     *
+     * @param summaries the summaries of the reports
+     * @param replaced  the coverage of the classes listed again by a later report, it can be null
+     * @return the sum of the summaries or null if there are no summaries
+     */
+    public static CoverageSummary merge(List<CoverageSummary> summaries, ClassCoverageIndex replaced) {
+        if (summaries.isEmpty()) {
+            return null;
+        }
+        if (summaries.size() == 1) {
+            return summaries.get(0);
+        }
+        long coveredLines = 0;
+        long uncoveredLines = 0;
+        CoverageBands bands = summaries.get(0).bands;
+        String title = null;
+        int[] fileCounts = new int[bands.getBandCount()];
+        for (CoverageSummary summary : summaries) {
+            if (null == title && null != summary.title && !summary.title.isEmpty()) {
+                title = summary.title;
+            }
+            coveredLines += summary.coveredLines;
+            uncoveredLines += summary.uncoveredLines;
+            for (int i = 0; i < fileCounts.length; i++) {
+                fileCounts[i] += summary.fileCounts[i];
+            }
+        }
+        for (int i = 0; null != replaced && i < replaced.size(); i++) {
+            coveredLines -= replaced.getCoveredLines(i);
+            uncoveredLines -= replaced.getUncoveredLines(i);
+            int band = bands.getBand(replaced.getPercentage(i));
+            if (replaced.getCoveredLines(i) + replaced.getUncoveredLines(i) > 0 && fileCounts[band] > 0) {
+                fileCounts[band]--;
+            }
+        }
+        return new CoverageSummary(Math.max(0, coveredLines), Math.max(0, uncoveredLines), fileCounts, bands, title);
+    }
+
+    /**
+     * Rounds a number half up from its exact binary value, as the percentages were always rounded
+     *
+     * @param value the number
+     * @param scale decimal numbers
+     * @return the rounded number
+     */
+    public static double round(double value, int scale) {
+        return new BigDecimal(value).setScale(scale, BigDecimal.ROUND_HALF_UP).doubleValue();
+    }
+
+    /**
+     * Gets a summary from the data read from the JSON file
+     *
+     * @param pieChartData the pie chart data read from the JSON file
+     * @return the summary or null if there are not coverage data
+     */
+    public static CoverageSummary fromPieChartData(PieChartData pieChartData) {
+        if (null == pieChartData || !pieChartData.coverageDataExists()) {
+            return null;
+        }
+        Object[][] coverageData = pieChartData.getCoverageData();
+        int[] fileCounts = new int[CoverageBands.DEFAULT.getBandCount()];
+        if (pieChartData.dataExists()) {
+            Object[][] data = pieChartData.getData();
+            for (int i = 0; i < fileCounts.length; i++) {
+                fileCounts[i] = (int) toLong(data[i + 1][1]);
+            }
+        }
+        return new CoverageSummary(toLong(coverageData[1][1]), toLong(coverageData[2][1]), fileCounts,
+                CoverageBands.DEFAULT, pieChartData.getTitle());
+    }
+
+    /**
+     * Gets a pie chart data view of this summary, it keeps the layout of the JSON file
+     */
+    public PieChartData toPieChartData() {
+        return new PieChartData(this);
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return Math.round(((Number) value).doubleValue());
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CoverageSummary)) {
+            return false;
+        }
+        CoverageSummary that = (CoverageSummary) other;
+        return coveredLines == that.coveredLines && uncoveredLines == that.uncoveredLines
+                && Arrays.equals(fileCounts, that.fileCounts) && bands.equals(that.bands);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (coveredLines ^ (coveredLines >>> 32));
+        result = 31 * result + (int) (uncoveredLines ^ (uncoveredLines >>> 32));
+        result = 31 * result + Arrays.hashCode(fileCounts);
+        return 31 * result + bands.hashCode();
+    }
+}
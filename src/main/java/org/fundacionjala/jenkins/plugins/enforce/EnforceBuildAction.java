@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import com.google.gson.stream.JsonWriter;
+import hudson.model.Api;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import org.fundacionjala.jenkins.plugins.enforce.report.ClassCoverageIndex;
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageArchive;
+import org.fundacionjala.jenkins.plugins.enforce.report.TestImpactIndex;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the coverage published by a build, so it is parsed once and never read again from the workspace.
+ * The coverage is exported in the remote API and served as JSON from the "enforce" URL of the build, the files the
+ * build keeps in its directory are read through its {@link BuildCoverageStore}.
+ */
+@ExportedBean
+public class EnforceBuildAction implements RunAction2 {
+
+    private final CoverageSummary summary;
+    private final List<ReportCoverage> reports;
+    private final ReportFingerprint fingerprint;
+    private transient Run<?, ?> run;
+    private transient volatile PieChartData pieChartData;
+    private transient volatile CachedJsonResponse summaryResponse;
+
+    /**
+     * Creates the coverage action of a build
+     *
+     * @param summary the coverage parsed when the build was published
+     */
+    public EnforceBuildAction(CoverageSummary summary) {
+        this(summary, Collections.<ReportCoverage>emptyList());
+    }
+
+    /**
+     * Creates the coverage action of a build that published several reports
+     *
+     * @param summary the merged coverage of the reports
+     * @param reports the coverage of every report
+     */
+    public EnforceBuildAction(CoverageSummary summary, List<ReportCoverage> reports) {
+        this(summary, reports, null);
+    }
+
+    /**
+     * Creates the coverage action of a build with the fingerprint of its reports
+     *
+     * @param summary     the merged coverage of the reports
+     * @param reports     the coverage of every report
+     * @param fingerprint the fingerprint of the reports, it can be null
+     */
+    public EnforceBuildAction(CoverageSummary summary, List<ReportCoverage> reports, ReportFingerprint fingerprint) {
+        this.summary = summary;
+        this.reports = new ArrayList<ReportCoverage>(reports);
+        this.fingerprint = fingerprint;
+    }
+
+    public CoverageSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Gets coverage percentage rounded to two decimals
+     */
+    @Exported
+    public double getPercentage() {
+        return summary.getRoundedPercentage();
+    }
+
+    @Exported
+    public long getCoveredLines() {
+        return summary.getCoveredLines();
+    }
+
+    @Exported
+    public long getUncoveredLines() {
+        return summary.getUncoveredLines();
+    }
+
+    @Exported
+    public String getStatus() {
+        return summary.getStatus();
+    }
+
+    /**
+     * Gets the amount of files per band, from Danger to Safe
+     */
+    @Exported
+    public int[] getFileCounts() {
+        int[] fileCounts = new int[summary.getBandCount()];
+        for (int band = 0; band < fileCounts.length; band++) {
+            fileCounts[band] = summary.getFileCount(band);
+        }
+        return fileCounts;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * Serves the coverage of the build as JSON, it is rendered once since the coverage of a build does not change
+     */
+    public void doSummary(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException {
+        CachedJsonResponse response = summaryResponse;
+        if (null == response) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            JsonWriter json = new JsonWriter(new OutputStreamWriter(body, "UTF-8"));
+            writeJson(json);
+            json.close();
+            response = new CachedJsonResponse(run.getExternalizableId(), body.toByteArray());
+            summaryResponse = response;
+        }
+        response.serve(staplerRequest, staplerResponse);
+    }
+
+    /**
+     * Writes the coverage of the build as a JSON object
+     */
+    void writeJson(JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("build").value(run.getNumber());
+        json.name("timestamp").value(run.getTimeInMillis());
+        writeSummary(json, summary);
+        json.name("reports").beginArray();
+        for (ReportCoverage report : getReports()) {
+            json.beginObject();
+            json.name("path").value(report.getPath());
+            writeSummary(json, report.getSummary());
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    /**
+     * Writes the fields of a coverage summary in the current JSON object
+     */
+    static void writeSummary(JsonWriter json, CoverageSummary summary) throws IOException {
+        json.name("percentage").value(summary.getRoundedPercentage());
+        json.name("coveredLines").value(summary.getCoveredLines());
+        json.name("uncoveredLines").value(summary.getUncoveredLines());
+        json.name("status").value(summary.getStatus());
+        json.name("color").value(summary.getColor());
+        json.name("bands").beginArray();
+        for (int band = 0; band < summary.getBandCount(); band++) {
+            json.beginObject();
+            json.name("name").value(summary.getBands().getName(band));
+            json.name("label").value(summary.getBands().getLabel(band));
+            json.name("from").value(summary.getBands().getLowerLimit(band));
+            json.name("color").value(summary.getBands().getColor(band));
+            json.name("files").value(summary.getFileCount(band));
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    /**
+     * Gets the fingerprint of the reports of the build
+     *
+     * @return the fingerprint or null if the build was published before the reports were fingerprinted
+     */
+    public ReportFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Gets the coverage of every report published by the build
+     *
+     * @return the reports, it is empty for builds published before reports were merged
+     */
+    public List<ReportCoverage> getReports() {
+        return null == reports ? Collections.<ReportCoverage>emptyList() : Collections.unmodifiableList(reports);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * Gets the pie chart data of the build, it is built from the summary the first time it is requested
+     */
+    public PieChartData getPieChartData() {
+        PieChartData data = pieChartData;
+        if (null == data) {
+            data = summary.toPieChartData();
+            pieChartData = data;
+        }
+        return data;
+    }
+
+    /**
+     * Gets the coverage files kept in the build directory
+     */
+    public BuildCoverageStore getStore() {
+        return BuildCoverageStore.of(run);
+    }
+
+    /**
+     * Verifies if the build has coverage per class
+     */
+    public boolean hasClassIndex() {
+        return getStore().hasClassIndex();
+    }
+
+    /**
+     * Gets the coverage per class of the build
+     *
+     * @return the class index or null if the report of the build did not have per file data
+     */
+    public ClassCoverageIndex getClassIndex() throws IOException, InterruptedException {
+        return getStore().getClassIndex();
+    }
+
+    /**
+     * Verifies if the build archived its coverage with line numbers
+     */
+    public boolean hasArchive() {
+        return getStore().hasArchive();
+    }
+
+    /**
+     * Gets the archive of the full coverage of the build
+     *
+     * @return the archive or null if the report of the build did not have per file data
+     */
+    public CoverageArchive getArchive() throws IOException, InterruptedException {
+        return getStore().getArchive();
+    }
+
+    /**
+     * Verifies if the build knows the tests that cover each class
+     */
+    public boolean hasTestImpact() {
+        return getStore().hasTestImpact();
+    }
+
+    /**
+     * Gets the tests that cover each class of the build
+     *
+     * @return the index or null if the files of the report of the build did not list their tests
+     */
+    public TestImpactIndex getTestImpact() throws IOException, InterruptedException {
+        return getStore().getTestImpact();
+    }
+
+    /**
+     * Serves the tests that cover any of the changed classes as JSON. Parameter: classes (the class names separated
+     * by commas).
+     */
+    public void doImpactedTests(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException, InterruptedException {
+        TestImpactIndex testImpact = getTestImpact();
+        if (null == testImpact) {
+            staplerResponse.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        writeSelection(staplerResponse, run, testImpact.select(TestImpactIndex.splitClassNames(staplerRequest.getParameter("classes"))));
+    }
+
+    /**
+     * Writes the tests selected for the changed classes as JSON
+     *
+     * @param staplerResponse the response
+     * @param build           the build whose test impact index was read
+     * @param selection       the selected tests
+     */
+    static void writeSelection(StaplerResponse staplerResponse, Run<?, ?> build, TestImpactIndex.Selection selection)
+            throws IOException {
+        staplerResponse.setContentType("application/json;charset=UTF-8");
+        JsonWriter json = new JsonWriter(staplerResponse.getWriter());
+        json.beginObject();
+        json.name("build").value(build.getNumber());
+        json.name("tests").beginArray();
+        for (String test : selection.getTests()) {
+            json.value(test);
+        }
+        json.endArray();
+        json.name("unknownClasses").beginArray();
+        for (String className : selection.getUnknownClasses()) {
+            json.value(className);
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Serves the coverage of a class of the build with its line numbers as JSON, only its block of the archive is
+     * read. Parameter: class (the class name).
+     */
+    public void doLines(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException, InterruptedException {
+        String name = staplerRequest.getParameter("class");
+        CoverageArchive archive = getArchive();
+        CoverageArchive.ClassLines lines = null == archive || null == name ? null : archive.find(name);
+        if (null == lines) {
+            staplerResponse.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        staplerResponse.setContentType("application/json;charset=UTF-8");
+        JsonWriter json = new JsonWriter(staplerResponse.getWriter());
+        json.beginObject();
+        json.name("name").value(lines.getName());
+        json.name("covered").value(lines.getCoveredLines());
+        json.name("uncovered").value(lines.getUncoveredLines());
+        writeLineNumbers(json.name("coveredLines"), lines.getCoveredLineNumbers());
+        writeLineNumbers(json.name("uncoveredLines"), lines.getUncoveredLineNumbers());
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeLineNumbers(JsonWriter json, int[] lineNumbers) throws IOException {
+        json.beginArray();
+        for (int line : lineNumbers) {
+            json.value(line);
+        }
+        json.endArray();
+    }
+
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return Constants.BUILD_ACTION_DISPLAY_NAME;
+    }
+
+    public String getUrlName() {
+        return Constants.BUILD_ACTION_URL_NAME;
+    }
+}
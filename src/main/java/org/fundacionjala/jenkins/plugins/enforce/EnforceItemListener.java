@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import org.fundacionjala.jenkins.plugins.enforce.metrics.EnforceMetrics;
+
+/**
+ * Keeps the coverage of folders and views, the backfill progress, the slowest jobs and the stores kept in memory up
+ * to date when their jobs are deleted, renamed or moved, and saves the coverage of folders and views before Jenkins
+ * shuts down.
+ */
+@Extension
+public class EnforceItemListener extends ItemListener {
+
+    @Override
+    public void onDeleted(Item item) {
+        forget(item.getFullName());
+        if (item instanceof Job) {
+            CoverageRollup.get().removeJob(item.getFullName());
+            BackfillProgress.get().remove(item.getFullName());
+            EnforceMetrics.slowestPublishers().remove(item.getFullName());
+        } else if (item instanceof ItemGroup) {
+            CoverageRollup.get().removeJobs(item.getFullName() + "/");
+        }
+    }
+
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        forget(oldFullName);
+        if (item instanceof Job) {
+            CoverageRollup.get().move((Job<?, ?>) item, oldFullName);
+            BackfillProgress.get().move(oldFullName, newFullName);
+            EnforceMetrics.slowestPublishers().remove(oldFullName);
+        }
+    }
+
+    @Override
+    public void onBeforeShutdown() {
+        CoverageRollup.flushInstance();
+    }
+
+    /**
+     * Drops the stores kept in memory for a job or for the jobs of a folder, they are read again from the new
+     * location when they are used
+     */
+    private static void forget(String fullName) {
+        CoverageHistory.forget(fullName);
+        TestHistory.forget(fullName);
+        EnforceProjectAction.forget(fullName);
+    }
+}
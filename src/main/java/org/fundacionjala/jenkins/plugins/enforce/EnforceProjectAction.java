@@ -5,59 +5,87 @@
 
 package org.fundacionjala.jenkins.plugins.enforce;
 
-import hudson.model.AbstractBuild;
+import com.google.gson.stream.JsonWriter;
+import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.Actionable;
 import hudson.model.ProminentProjectAction;
+import hudson.model.Run;
+import org.fundacionjala.jenkins.plugins.enforce.metrics.EnforceMetrics;
+import org.fundacionjala.jenkins.plugins.enforce.report.ClassCoverageIndex;
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageArchive;
+import org.fundacionjala.jenkins.plugins.enforce.report.TestImpactIndex;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.io.OutputStreamWriter;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Creates an additional URL subspace and exposes a link in the left hand side menu for Enforce jenkins plugin.
  */
 public class EnforceProjectAction extends Actionable implements ProminentProjectAction {
 
+    private static final Logger LOGGER = Logger.getLogger(EnforceProjectAction.class.getName());
+    private static final ConcurrentMap<String, CachedJsonResponse> SUMMARY_RESPONSES =
+            new ConcurrentHashMap<String, CachedJsonResponse>();
+
     private final AbstractProject<?, ?> project;
-    private final String jsonFileName;
-    private final double minimumCoverage;
-    private PieChartData pieChartData;
-    private int[] range;
-    private String[] color;
 
     /**
-     * Creates an additional action for Enforce jenkins plugin
+     * Creates an additional action for Enforce jenkins plugin. The action keeps no state of the builds, so the
+     * publisher creates it once and every page of the project uses the same instance.
      *
      * @param project base implementation of Jobs
      */
     public EnforceProjectAction(AbstractProject<?, ?> project) {
-        this.project = project;        
-        EnforcePublisher enforcePublisher = (EnforcePublisher) project.getPublishersList().get(EnforcePublisher.DESCRIPTOR);
-        this.jsonFileName = enforcePublisher.getJsonFileName();
-        this.minimumCoverage = enforcePublisher.getMinimumCoverage();
-        this.pieChartData = new PieChartData();
-
-        this.range =  new int[]{0, 75, 80, 95, 100};
-        this.color = new String[]{"#d2322d","#ed9c28","#2aabd2","#5cb85c"};
-
+        this.project = project;
     }
 
     /**
      * Gets the data to render the pie chart in floating box
      *
-     * @param build the current build to get the workspace
-     * @return a new pie chart instance
+     * @param build the build that published the coverage
+     * @return the pie chart data attached to the build or an empty one
      */
-    public PieChartData getPieChartData(AbstractBuild<?, ?> build) {
+    public PieChartData getPieChartData(Run<?, ?> build) {
+        long start = System.nanoTime();
+        EnforceBuildAction action = null == build ? null : build.getAction(EnforceBuildAction.class);
+        PieChartData pieChartData = null == action ? new PieChartData() : action.getPieChartData();
+        EnforceMetrics.timer(EnforceMetrics.PROJECT_PIE_CHART_DATA).updateSince(start);
+        return pieChartData;
+    }
+
+    /**
+     * Gets the coverage of the newest builds from the job history
+     *
+     * @return the history records, oldest first
+     */
+    public List<CoverageHistory.Entry> getTrend() {
         try {
-            String jsonFilePath = Paths.get(build.getWorkspace().toURI()).resolve(jsonFileName).toString();
-            pieChartData = PieChartData.newInstance(jsonFilePath);
-        } catch (Exception exception) {
-            exception.printStackTrace();
+            return CoverageHistory.of(project).getEntries(Constants.TREND_MAX_BUILDS);
+        } catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Unable to read the coverage history of " + project.getFullName(), exception);
+            return Collections.emptyList();
         }
-        return pieChartData;
+    }
+
+    /**
+     * Gets the coverage of the last completed build
+     *
+     * @return the summary or null if the last completed build did not publish coverage
+     */
+    public CoverageSummary getLastSummary() {
+        EnforceBuildAction action = getLastBuildAction();
+        return null == action ? null : action.getSummary();
     }
 
     /**
@@ -65,15 +93,9 @@ public class EnforceProjectAction extends Actionable implements ProminentProject
      *
      * @return a string that represents a color name for css file
      */
-
     public String getPercentageColor() {
-        String percentageColor = "#5cb85c";
-        for (int i = 0; i < range.length - 1; i++) {
-            if(this.range[i] <= pieChartData.getPercentage() && this.range[i+1] > pieChartData.getPercentage() ) {
-                percentageColor = this.color[i];
-            }
-        }
-        return percentageColor;
+        CoverageSummary summary = getLastSummary();
+        return null == summary ? CoverageBands.DEFAULT.getColor(0) : summary.getColor();
     }
 
     /**
@@ -82,8 +104,7 @@ public class EnforceProjectAction extends Actionable implements ProminentProject
      * @return a float with value of not covered lines
      */
     public double getPercentageNotCovered() {
-        double coveragePercentage = pieChartData.getRoundedPercentage(2);
-        return pieChartData.getRoundedValue(100 - coveragePercentage, 2);
+        return CoverageSummary.round(100 - getPercentage(), 2);
     }
 
     /**
@@ -92,7 +113,8 @@ public class EnforceProjectAction extends Actionable implements ProminentProject
      * @return a float with value of coverage percentage
      */
     public double getPercentage() {
-        return pieChartData.getRoundedPercentage(2);
+        CoverageSummary summary = getLastSummary();
+        return null == summary ? 0 : summary.getRoundedPercentage();
     }
 
     public AbstractProject<?, ?> getProject() {
@@ -119,11 +141,226 @@ public class EnforceProjectAction extends Actionable implements ProminentProject
      * Gets true if pie chart has data to show it on the project dashboard
      */
     public boolean isCoverageVisibleOnProjectDashboard() {
-        return pieChartData.coverageDataExists() && pieChartData.dataExists();
+        return null != getLastSummary();
+    }
+
+    /**
+     * Gets the coverage action of the last completed build
+     *
+     * @return the action or null if the last completed build did not publish coverage
+     */
+    public EnforceBuildAction getLastBuildAction() {
+        Run<?, ?> build = project.getLastCompletedBuild();
+        return null == build ? null : build.getAction(EnforceBuildAction.class);
+    }
+
+    /**
+     * Gets the covered and uncovered lines of a class, only the archive block of the class is read
+     *
+     * @param name   the class name
+     * @param number the build number, the last completed build when it is empty
+     * @return the lines or null if the build did not archive its coverage or does not have the class
+     */
+    public CoverageArchive.ClassLines getClassLines(String name, String number) throws IOException, InterruptedException {
+        Run<?, ?> build = null;
+        try {
+            build = null == Util.fixEmptyAndTrim(number) ? project.getLastCompletedBuild()
+                    : project.getBuildByNumber(Integer.parseInt(number.trim()));
+        } catch (NumberFormatException exception) {
+            LOGGER.log(Level.FINE, "Invalid build number " + number, exception);
+        }
+        EnforceBuildAction action = null == build ? null : build.getAction(EnforceBuildAction.class);
+        CoverageArchive archive = null == action || null == name ? null : action.getArchive();
+        return null == archive ? null : archive.find(name);
+    }
+
+    /**
+     * Gets the slowest tests of the newest builds for the test history page
+     */
+    public List<TestHistory.TestStats> getSlowestTests() {
+        try {
+            return TestHistory.of(project).getSlowest(Constants.TEST_HISTORY_PAGE_SIZE, Constants.TEST_HISTORY_MAX_BUILDS);
+        } catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Unable to read the test history of " + project.getFullName(), exception);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Gets the flaky tests of the newest builds for the test history page
+     */
+    public List<TestHistory.TestStats> getFlakyTests() {
+        try {
+            return TestHistory.of(project).getFlaky(Constants.TEST_HISTORY_PAGE_SIZE, Constants.TEST_HISTORY_MAX_BUILDS);
+        } catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Unable to read the test history of " + project.getFullName(), exception);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Serves the tests that cover any of the changed classes as JSON, from the newest completed build that knows the
+     * tests of each class. Parameter: classes (the class names separated by commas).
+     */
+    public void doImpactedTests(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException, InterruptedException {
+        Run<?, ?> build = BuildCoverageStore.findTestImpactBuild(project.getLastCompletedBuild());
+        TestImpactIndex testImpact = null == build ? null : BuildCoverageStore.of(build).getTestImpact();
+        if (null == testImpact) {
+            staplerResponse.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        EnforceBuildAction.writeSelection(staplerResponse, build,
+                testImpact.select(TestImpactIndex.splitClassNames(staplerRequest.getParameter("classes"))));
+    }
+
+    /**
+     * Serves the slowest or the flaky tests of the test history as JSON.
+     * Parameters: type (slowest or flaky), count and builds.
+     */
+    public void doTests(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException {
+        TestHistory history = TestHistory.of(project);
+        int count = Math.max(1, Math.min(getIntParameter(staplerRequest, "count", Constants.TEST_HISTORY_DEFAULT_COUNT),
+                Constants.CLASS_PAGE_MAX_SIZE));
+        int builds = Math.max(1, getIntParameter(staplerRequest, "builds", Constants.TEST_HISTORY_DEFAULT_BUILDS));
+        boolean flaky = "flaky".equalsIgnoreCase(staplerRequest.getParameter("type"));
+        List<TestHistory.TestStats> tests = flaky ? history.getFlaky(count, builds) : history.getSlowest(count, builds);
+
+        staplerResponse.setContentType("application/json;charset=UTF-8");
+        JsonWriter json = new JsonWriter(staplerResponse.getWriter());
+        json.beginObject();
+        json.name("builds").value(Math.min(builds, history.getBuildCount()));
+        json.name("tests").beginArray();
+        for (TestHistory.TestStats test : tests) {
+            json.beginObject();
+            json.name("name").value(test.getName());
+            json.name("runs").value(test.getRuns());
+            json.name("failures").value(test.getFailures());
+            json.name("flips").value(test.getFlips());
+            json.name("averageDuration").value(CoverageSummary.round(test.getAverageDuration(), 1));
+            json.name("maxDuration").value(test.getMaxDuration());
+            json.name("lastDuration").value(test.getLastDuration());
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Serves the coverage of the last completed build and the coverage trend as JSON.
+     * The response is rendered again only when a build is completed, added to or removed from the history.
+     */
+    public void doSummary(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException {
+        Run<?, ?> build = project.getLastCompletedBuild();
+        String key = (null == build ? "" : build.getExternalizableId()) + "#" + CoverageHistory.of(project).getVersion();
+        CachedJsonResponse response = SUMMARY_RESPONSES.get(project.getFullName());
+        if (null == response || !key.equals(response.getKey())) {
+            response = new CachedJsonResponse(key, renderSummary(build));
+            SUMMARY_RESPONSES.put(project.getFullName(), response);
+        }
+        response.serve(staplerRequest, staplerResponse);
+    }
+
+    /**
+     * Drops the cached summaries of a deleted or renamed job or of the jobs of a deleted or renamed folder
+     *
+     * @param fullName the former full name of the job or folder
+     */
+    static void forget(String fullName) {
+        for (Iterator<String> keys = SUMMARY_RESPONSES.keySet().iterator(); keys.hasNext(); ) {
+            String key = keys.next();
+            if (key.equals(fullName) || key.startsWith(fullName + "/")) {
+                keys.remove();
+            }
+        }
+    }
+
+    private byte[] renderSummary(Run<?, ?> build) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(body, "UTF-8"));
+        json.beginObject();
+        json.name("job").value(project.getFullName());
+        EnforceBuildAction action = null == build ? null : build.getAction(EnforceBuildAction.class);
+        json.name("lastBuild");
+        if (null == action) {
+            json.nullValue();
+        } else {
+            action.writeJson(json);
+        }
+        json.name("trend").beginArray();
+        for (CoverageHistory.Entry entry : getTrend()) {
+            json.beginObject();
+            json.name("build").value(entry.getBuildNumber());
+            json.name("timestamp").value(entry.getTimestamp());
+            json.name("percentage").value(entry.getSummary().getRoundedPercentage());
+            json.name("coveredLines").value(entry.getSummary().getCoveredLines());
+            json.name("uncoveredLines").value(entry.getSummary().getUncoveredLines());
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.close();
+        return body.toByteArray();
+    }
+
+    /**
+     * Serves a page of the class coverage of the last completed build as JSON.
+     * Parameters: q (name prefix), sort (name, percentage or uncovered), order (asc or desc), page and size.
+     */
+    public void doClasses(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException, InterruptedException {
+        EnforceBuildAction action = getLastBuildAction();
+        ClassCoverageIndex classIndex = null == action ? null : action.getClassIndex();
+        if (null == classIndex) {
+            staplerResponse.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        ClassCoverageIndex.Sort sort = getSort(staplerRequest.getParameter("sort"));
+        boolean descending = "desc".equalsIgnoreCase(staplerRequest.getParameter("order"));
+        int size = Math.max(1, Math.min(getIntParameter(staplerRequest, "size", Constants.CLASS_PAGE_SIZE),
+                Constants.CLASS_PAGE_MAX_SIZE));
+        int page = getIntParameter(staplerRequest, "page", 0);
+        ClassCoverageIndex.Page classes = classIndex.getPage(staplerRequest.getParameter("q"), sort, descending, page * size, size);
+
+        staplerResponse.setContentType("application/json;charset=UTF-8");
+        JsonWriter json = new JsonWriter(staplerResponse.getWriter());
+        json.beginObject();
+        json.name("total").value(classes.getTotal());
+        json.name("page").value(page);
+        json.name("size").value(size);
+        json.name("classes").beginArray();
+        for (int index : classes.getIndexes()) {
+            json.beginObject();
+            json.name("name").value(classIndex.getName(index));
+            json.name("covered").value(classIndex.getCoveredLines(index));
+            json.name("uncovered").value(classIndex.getUncoveredLines(index));
+            json.name("percentage").value(CoverageSummary.round(classIndex.getPercentage(index), 2));
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    private static ClassCoverageIndex.Sort getSort(String sort) {
+        for (ClassCoverageIndex.Sort value : ClassCoverageIndex.Sort.values()) {
+            if (value.name().equalsIgnoreCase(sort)) {
+                return value;
+            }
+        }
+        return ClassCoverageIndex.Sort.NAME;
+    }
+
+    private static int getIntParameter(StaplerRequest staplerRequest, String name, int defaultValue) {
+        String value = staplerRequest.getParameter(name);
+        try {
+            return null == value ? defaultValue : Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException exception) {
+            return defaultValue;
+        }
     }
 
     /**
-     * Redirects to an empty page
+     * Redirects to the coverage details page
      */
     public void doIndex(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException {
         staplerResponse.sendRedirect2(Constants.ACTION_PAGE_COVERAGE_DETAILS);
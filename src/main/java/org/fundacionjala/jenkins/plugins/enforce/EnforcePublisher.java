@@ -7,7 +7,9 @@ package org.fundacionjala.jenkins.plugins.enforce;
 
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.*;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
@@ -15,26 +17,45 @@ import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import hudson.tasks.test.AbstractTestResultAction;
 import hudson.tasks.test.TestResult;
+import jenkins.model.Jenkins;
+import jenkins.tasks.SimpleBuildStep;
 import net.sf.json.JSONObject;
+import org.fundacionjala.jenkins.plugins.enforce.metrics.EnforceMetrics;
+import org.fundacionjala.jenkins.plugins.enforce.report.ClassCoverageIndex;
+import org.fundacionjala.jenkins.plugins.enforce.report.TestImpactIndex;
+import org.fundacionjala.jenkins.plugins.enforce.tokens.EnforceMacroCache;
+import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.tokenmacro.DataBoundTokenMacro;
 import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.StaplerRequest;
 
-import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Represents the post build Enforce that run after the build is completed.
  */
-public class EnforcePublisher extends Recorder {
+public class EnforcePublisher extends Recorder implements SimpleBuildStep {
 
     private final String jsonFileName;
     private final float minimumCoverage;
-    private PieChartData pieChartData;
+    private Float maximumCoverageDrop;
+    private boolean failOnClassRegression;
+    private String baselineJobName;
+    private Integer riskCoverage;
+    private Integer acceptableCoverage;
+    private Integer safeCoverage;
+    private transient CoverageBands bands;
+    private transient volatile EnforceProjectAction projectAction;
+
+    private static final Logger LOGGER = Logger.getLogger(EnforcePublisher.class.getName());
 
     @Extension
     public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
@@ -54,28 +75,133 @@ public class EnforcePublisher extends Recorder {
         return minimumCoverage;
     }
 
-    public PieChartData getPieChartData(AbstractBuild<?, ?> build, TaskListener listener) {
-        return this.getPieChartData(build, listener, null);
+    /**
+     * Gets the maximum coverage points the build can lose against the baseline build
+     *
+     * @return the points or null if the coverage drop is not checked
+     */
+    public Float getMaximumCoverageDrop() {
+        return maximumCoverageDrop;
+    }
+
+    @DataBoundSetter
+    public void setMaximumCoverageDrop(Float maximumCoverageDrop) {
+        this.maximumCoverageDrop = maximumCoverageDrop;
+    }
+
+    public boolean isFailOnClassRegression() {
+        return failOnClassRegression;
+    }
+
+    @DataBoundSetter
+    public void setFailOnClassRegression(boolean failOnClassRegression) {
+        this.failOnClassRegression = failOnClassRegression;
+    }
+
+    /**
+     * Gets the job whose last successful build is the baseline, E.G. the job of the target branch
+     *
+     * @return the full job name or null to use the last successful build of the same job
+     */
+    public String getBaselineJobName() {
+        return baselineJobName;
+    }
+
+    @DataBoundSetter
+    public void setBaselineJobName(String baselineJobName) {
+        this.baselineJobName = Util.fixEmptyAndTrim(baselineJobName);
+    }
+
+    /**
+     * Gets the percentage where the Risk band starts
+     *
+     * @return the percentage or null to use the default one
+     */
+    public Integer getRiskCoverage() {
+        return riskCoverage;
+    }
+
+    @DataBoundSetter
+    public void setRiskCoverage(Integer riskCoverage) {
+        this.riskCoverage = riskCoverage;
+        this.bands = null;
+    }
+
+    public Integer getAcceptableCoverage() {
+        return acceptableCoverage;
+    }
+
+    @DataBoundSetter
+    public void setAcceptableCoverage(Integer acceptableCoverage) {
+        this.acceptableCoverage = acceptableCoverage;
+        this.bands = null;
     }
 
-    public PieChartData getPieChartData(AbstractBuild<?, ?> build, TaskListener listener, StringBuilder message) {
-        if (null == this.pieChartData) {
+    public Integer getSafeCoverage() {
+        return safeCoverage;
+    }
+
+    @DataBoundSetter
+    public void setSafeCoverage(Integer safeCoverage) {
+        this.safeCoverage = safeCoverage;
+        this.bands = null;
+    }
+
+    /**
+     * Gets the coverage bands of the job, they are compiled once per configuration
+     *
+     * @return the configured bands or the default ones when they are not set or not valid
+     */
+    public CoverageBands getBands() {
+        CoverageBands result = bands;
+        if (null == result) {
+            int[] limits = Constants.DEFAULT_COVERAGE_BAND_LIMITS;
             try {
-                String jsonFilePath = Paths.get(build.getWorkspace().toURI()).resolve(jsonFileName).toString();
-                if (!new File(jsonFilePath).exists()) {
-                    String msg = jsonFilePath + " was not found";
-                    listener.getLogger().println(msg);
-                    if (null != message) {
-                        message.append(msg);
-                    }
-                }
-                pieChartData = PieChartData.newInstance(jsonFilePath);
-            } catch (Exception exception) {
-                build.setResult(Result.FAILURE);
-                exception.printStackTrace(listener.fatalError("Unable to find coverage data"));
+                result = new CoverageBands(null == riskCoverage ? limits[0] : riskCoverage,
+                        null == acceptableCoverage ? limits[1] : acceptableCoverage,
+                        null == safeCoverage ? limits[2] : safeCoverage);
+            } catch (IllegalArgumentException exception) {
+                LOGGER.log(Level.WARNING, "Invalid coverage bands, the default ones are used", exception);
+                result = CoverageBands.DEFAULT;
+            }
+            bands = result;
+        }
+        return result;
+    }
+
+    /**
+     * Reads the report of a build when it publishes, the pages and the token macros read the coverage it publishes
+     *
+     * @return the report or null if it was not found
+     */
+    private CoverageReport readCoverageReport(Run<?, ?> run, FilePath workspace, TaskListener listener,
+                                              StringBuilder message) throws IOException, InterruptedException {
+        try {
+            if (null == workspace) {
+                throw new FileNotFoundException(jsonFileName + " was not found, the build does not have a workspace");
+            }
+            Run<?, ?> previousBuild = findPreviousPublished(run);
+            EnforceBuildAction previousAction = null == previousBuild ? null : previousBuild.getAction(EnforceBuildAction.class);
+            ReportFingerprint previous = null == previousAction ? null : previousAction.getFingerprint();
+            CoverageReport report = workspace.act(new CoverageReportCallable(jsonFileName, getBands(), previous));
+            EnforceMetrics.timer(EnforceMetrics.REPORT_PARSE).update(report.getParseTime());
+            EnforceMetrics.counter(EnforceMetrics.REPORT_FILES).add(report.getFilesRead());
+            EnforceMetrics.counter(EnforceMetrics.REPORT_BYTES).add(report.getBytesRead());
+            if (report.isUnchanged()) {
+                listener.getLogger().println("The coverage report did not change since " + previousBuild.getFullDisplayName()
+                        + " (fingerprint " + report.getFingerprint() + "), its coverage is reused");
+                EnforceMetrics.counter(EnforceMetrics.REPORT_REUSED).inc();
+                return CoverageReport.reuse(report.getFingerprint(), previousBuild, previousAction);
             }
+            return report;
+        } catch (FileNotFoundException exception) {
+            String msg = exception.getMessage();
+            listener.getLogger().println(msg);
+            if (null != message) {
+                message.append(msg);
+            }
+            return null;
         }
-        return this.pieChartData;
     }
 
     /**
@@ -86,37 +212,233 @@ public class EnforcePublisher extends Recorder {
      * @param listener It receives events that happen during a build.
      */
     @Override
-    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+            throws InterruptedException, IOException {
+        perform(build, build.getWorkspace(), launcher, listener);
+        return true;
+    }
+
+    /**
+     * Runs the step over the given build of any job type, including Pipeline jobs.
+     *
+     * @param run       the current build.
+     * @param workspace the workspace that has the coverage report.
+     * @param launcher  It is responsible for inheriting environment variables.
+     * @param listener  It receives events that happen during a build.
+     */
+    public void perform(Run<?, ?> run, FilePath workspace, Launcher launcher, TaskListener listener)
+            throws InterruptedException, IOException {
+        long start = System.nanoTime();
+        try {
+            publish(run, workspace, listener);
+        } finally {
+            EnforceMetrics.timer(EnforceMetrics.PUBLISHER_PERFORM).updateSince(start);
+            EnforceMetrics.slowestPublishers().updateSince(run.getParent().getFullName(), run.getNumber(), start);
+        }
+    }
+
+    private void publish(Run<?, ?> run, FilePath workspace, TaskListener listener) throws InterruptedException, IOException {
         StringBuilder message = new StringBuilder();
         listener.getLogger().println(message.append("Minimum Coverage:").append(minimumCoverage).append("%"));
-        if (null == this.getPieChartData(build, listener, message)) {
-            return true;
+        CoverageReport report;
+        try {
+            report = readCoverageReport(run, workspace, listener, message);
+        } catch (IOException exception) {
+            run.setResult(Result.FAILURE);
+            exception.printStackTrace(listener.fatalError("Unable to find coverage data"));
+            return;
+        }
+        CoverageSummary summary = null == report ? null : report.getSummary();
+        if (null != summary) {
+            recordCoverage(run, report, listener);
         }
-        double coveragePercentage = pieChartData != null ? pieChartData.getRoundedPercentage(2) : 0;
-        if (pieChartData != null && pieChartData.coverageDataExists() && coveragePercentage < minimumCoverage) {
+        PieChartData pieChartData = null == summary ? new PieChartData() : summary.toPieChartData();
+        double coveragePercentage = pieChartData.getRoundedPercentage(2);
+        if (pieChartData.coverageDataExists() && coveragePercentage < minimumCoverage) {
             message = new StringBuilder();
             listener.getLogger().println(message.append("Percentage coverage (").append(coveragePercentage)
                     .append("%)")
                     .append(" is less than minimum coverage(")
                     .append(minimumCoverage).append("%)"));
-            build.setResult(Result.FAILURE);
+            run.setResult(Result.FAILURE);
         } else {
-            build.setResult(Result.SUCCESS);
+            run.setResult(Result.SUCCESS);
+        }
+        if (null != report && null != summary && !checkBaseline(run, report, listener)) {
+            run.setResult(Result.FAILURE);
         }
 
         message = new StringBuilder();
         listener.getLogger().println(message.append(Constants.PUBLISHER_MESSAGE).append(":").append(jsonFileName).toString());
+    }
 
-        return true;
+    /**
+     * Compares the coverage with the baseline build. The class check reads the cached class index of the baseline
+     * and walks both indexes once, so no report is parsed again.
+     *
+     * @return false if the coverage dropped more than allowed or a class regressed
+     */
+    private boolean checkBaseline(Run<?, ?> run, CoverageReport report, TaskListener listener)
+            throws IOException, InterruptedException {
+        if (null == maximumCoverageDrop && !failOnClassRegression) {
+            return true;
+        }
+        Run<?, ?> baseline = findBaseline(run);
+        EnforceBuildAction baselineAction = null == baseline ? null : baseline.getAction(EnforceBuildAction.class);
+        if (null == baselineAction) {
+            listener.getLogger().println("No baseline build with coverage was found, the coverage drop is not checked");
+            return true;
+        }
+        listener.getLogger().println("Comparing the coverage with " + baseline.getFullDisplayName());
+        boolean passed = true;
+        if (null != maximumCoverageDrop) {
+            double drop = CoverageSummary.round(baselineAction.getSummary().getRoundedPercentage()
+                    - report.getSummary().getRoundedPercentage(), 2);
+            if (drop > maximumCoverageDrop) {
+                listener.getLogger().println("Coverage dropped " + drop + " points, more than the maximum drop ("
+                        + maximumCoverageDrop + " points)");
+                passed = false;
+            }
+        }
+        if (failOnClassRegression) {
+            ClassCoverageIndex baselineIndex = baselineAction.getClassIndex();
+            if (null == baselineIndex || null == report.getClassIndex()) {
+                listener.getLogger().println("The coverage per class is missing, the class regressions are not checked");
+            } else {
+                List<ClassCoverageIndex.Regression> regressions = report.getClassIndex().findRegressions(baselineIndex);
+                for (int i = 0; i < regressions.size() && i < Constants.MAX_LOGGED_REGRESSIONS; i++) {
+                    ClassCoverageIndex.Regression regression = regressions.get(i);
+                    listener.getLogger().println("Coverage of " + regression.getName() + " dropped from "
+                            + CoverageSummary.round(regression.getBaselinePercentage(), 2) + "% to "
+                            + CoverageSummary.round(regression.getPercentage(), 2) + "%");
+                }
+                if (regressions.size() > Constants.MAX_LOGGED_REGRESSIONS) {
+                    listener.getLogger().println("... " + (regressions.size() - Constants.MAX_LOGGED_REGRESSIONS)
+                            + " more classes regressed");
+                }
+                passed &= regressions.isEmpty();
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Gets the newest successful build that published coverage, of the baseline job or else of the same job
+     */
+    private Run<?, ?> findBaseline(Run<?, ?> run) {
+        Run<?, ?> baseline;
+        if (null != baselineJobName) {
+            Job<?, ?> job = Jenkins.getInstance().getItemByFullName(baselineJobName, Job.class);
+            baseline = null == job ? null : job.getLastSuccessfulBuild();
+            if (baseline == run) {
+                baseline = run.getPreviousSuccessfulBuild();
+            }
+        } else {
+            baseline = run.getPreviousSuccessfulBuild();
+        }
+        for (int i = 0; null != baseline && i < Constants.MAX_BASELINE_LOOKUP; i++) {
+            if (null != baseline.getAction(EnforceBuildAction.class)) {
+                return baseline;
+            }
+            baseline = baseline.getPreviousSuccessfulBuild();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the newest previous build that published coverage with the same bands, its coverage can be reused when
+     * the reports did not change
+     */
+    private Run<?, ?> findPreviousPublished(Run<?, ?> run) {
+        Run<?, ?> previous = run.getPreviousBuild();
+        for (int i = 0; null != previous && i < Constants.MAX_BASELINE_LOOKUP; i++) {
+            EnforceBuildAction action = previous.getAction(EnforceBuildAction.class);
+            if (null != action) {
+                return getBands().equals(action.getSummary().getBands()) ? previous : null;
+            }
+            previous = previous.getPreviousBuild();
+        }
+        return null;
+    }
+
+    /**
+     * Attaches the coverage to the build and adds it to the coverage history of the job, the test results are added
+     * to the test history when the build completes. Only the history of this job is locked, so builds of other jobs
+     * keep publishing.
+     */
+    private void recordCoverage(Run<?, ?> run, CoverageReport report, TaskListener listener) {
+        CoverageSummary summary = report.getSummary();
+        saveReportFiles(run, report, listener);
+        run.replaceAction(new EnforceBuildAction(summary, report.getReports(), report.getFingerprint()));
+        EnforceMacroCache.invalidate(run);
+        try {
+            CoverageHistory.of(run.getParent()).append(run.getNumber(), run.getTimeInMillis(), summary);
+        } catch (IOException exception) {
+            exception.printStackTrace(listener.error("Unable to update the coverage history"));
+        }
+    }
+
+    /**
+     * Saves the class index, the archive and the test impact index of a report in the build directory, or links
+     * them from the build whose coverage is reused
+     */
+    static void saveReportFiles(Run<?, ?> run, CoverageReport report, TaskListener listener) {
+        if (null != report.getReusedBuild()) {
+            try {
+                BuildCoverageStore.of(run).linkReusedFiles(report.getReusedBuild());
+            } catch (IOException exception) {
+                exception.printStackTrace(listener.error("Unable to link the coverage files of "
+                        + report.getReusedBuild().getFullDisplayName()));
+            }
+            return;
+        }
+        if (null != report.getClassIndex()) {
+            try {
+                BuildCoverageStore.of(run).saveClassIndex(report.getClassIndex());
+            } catch (IOException exception) {
+                exception.printStackTrace(listener.error("Unable to save the class coverage index"));
+            }
+        }
+        byte[] archive = report.takeArchive();
+        TestImpactIndex testImpact = report.takeTestImpact();
+        if (null != testImpact) {
+            try {
+                BuildCoverageStore.of(run).saveTestImpact(testImpact);
+                listener.getLogger().println("Indexed " + testImpact.getTestCount() + " tests that cover "
+                        + testImpact.getClassCount() + " classes");
+            } catch (IOException exception) {
+                exception.printStackTrace(listener.error("Unable to save the test impact index"));
+            }
+        }
+        if (null != archive) {
+            try {
+                BuildCoverageStore.of(run).saveArchive(archive);
+                listener.getLogger().println("Archived the coverage of the classes in " + archive.length + " bytes");
+            } catch (IOException exception) {
+                exception.printStackTrace(listener.error("Unable to save the coverage archive"));
+            }
+        }
+        if (report.getReports().size() > 1) {
+            listener.getLogger().println("Merged the coverage of " + report.getReports().size() + " reports");
+        }
     }
 
+    /**
+     * Gets the project action, it is created once per configuration of the job because Jenkins asks for it every
+     * time the job is rendered. Saving the job configuration creates a new publisher and so a new action.
+     */
     @Override
     public Action getProjectAction(AbstractProject<?, ?> project) {
-        return new EnforceProjectAction(project);
+        EnforceProjectAction action = projectAction;
+        if (null == action || action.getProject() != project) {
+            action = new EnforceProjectAction(project);
+            projectAction = action;
+        }
+        return action;
     }
 
     public BuildStepMonitor getRequiredMonitorService() {
-        return BuildStepMonitor.BUILD;
+        return BuildStepMonitor.NONE;
     }
 
     @Override
@@ -125,6 +447,7 @@ public class EnforcePublisher extends Recorder {
     }
 
 
+    @Symbol("enforceCoverage")
     public static final class DescriptorImpl extends BuildStepDescriptor<Publisher> {
 
 
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the coverage stores of a job up to date when its builds change.
+ */
+@Extension
+public class EnforceRunListener extends RunListener<Run<?, ?>> {
+
+    private static final Logger LOGGER = Logger.getLogger(EnforceRunListener.class.getName());
+
+    /**
+     * Replaces the contribution of the job in the coverage of its folders and views and adds the test results of
+     * the build to the test history of the job
+     */
+    @Override
+    public void onCompleted(Run<?, ?> run, TaskListener listener) {
+        EnforceBuildAction action = run.getAction(EnforceBuildAction.class);
+        if (null != action && null != action.getSummary()) {
+            CoverageRollup.get().update(run.getParent(), run.getNumber(), action.getSummary());
+        }
+        if (null != action) {
+            try {
+                TestHistory.record(run);
+            } catch (IOException exception) {
+                exception.printStackTrace(listener.error("Unable to update the test history"));
+            }
+        }
+    }
+
+    /**
+     * Drops the coverage of a deleted build from the job history and from the coverage of its folders and views
+     */
+    @Override
+    public void onDeleted(Run<?, ?> run) {
+        if (null != run.getAction(EnforceBuildAction.class)) {
+            try {
+                CoverageHistory.of(run.getParent()).remove(run.getNumber());
+            } catch (IOException exception) {
+                LOGGER.log(Level.WARNING, "Unable to update the coverage history of " + run.getParent().getFullName(),
+                        exception);
+            }
+            try {
+                TestHistory.of(run.getParent()).remove(run.getNumber());
+            } catch (IOException exception) {
+                LOGGER.log(Level.WARNING, "Unable to update the test history of " + run.getParent().getFullName(),
+                        exception);
+            }
+            CoverageRollup.get().onDeleted(run);
+        }
+    }
+}
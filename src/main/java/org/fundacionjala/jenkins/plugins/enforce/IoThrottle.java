@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+/**
+ * Limits the bytes per second read by several threads. Every read reserves the time its bytes take at the budget
+ * after the reads reserved before it, and waits until that time, so the threads share the budget.
+ */
+final class IoThrottle {
+
+    private final long bytesPerSecond;
+    private long nextFree;
+
+    /**
+     * Creates the throttle
+     *
+     * @param bytesPerSecond the budget, at least one byte per second
+     */
+    IoThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(1, bytesPerSecond);
+    }
+
+    /**
+     * Charges bytes that are read or were just read, it waits while the reads of all the threads are over the budget
+     *
+     * @param bytes the amount of bytes
+     * @return the milliseconds waited
+     */
+    long acquire(long bytes) throws InterruptedException {
+        long wait = reserve(bytes, System.nanoTime()) / 1000000L;
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        return Math.max(0, wait);
+    }
+
+    /**
+     * Reserves the time of the bytes after the reads reserved before them
+     *
+     * @param bytes the amount of bytes
+     * @param now   the current time in nanoseconds
+     * @return the nanoseconds to wait before the bytes are in the budget
+     */
+    synchronized long reserve(long bytes, long now) {
+        long start = Math.max(nextFree, now);
+        nextFree = start + bytes * 1000000000L / bytesPerSecond;
+        return start - now;
+    }
+}
@@ -5,27 +5,50 @@
 
 package org.fundacionjala.jenkins.plugins.enforce;
 
-import com.google.gson.Gson;
+import org.fundacionjala.jenkins.plugins.enforce.metrics.EnforceMetrics;
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageReportParser;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.math.BigDecimal;
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
- * Represents the pie chart data to build the coverage percentage and analysis pie chart
+ * Represents the pie chart data to build the coverage percentage and analysis pie chart.
+ * It keeps the layout of the JSON file, the values are read from a {@link CoverageSummary} built once from it.
  */
 public class PieChartData {
 
     private String title;
     private Object data[][] = {};
     private Object coverageData[][] = {};
+    private transient volatile CoverageSummary summary;
+    private transient volatile ArrayList<ArrayList> javascriptData;
+    private transient volatile ArrayList<ArrayList> javascriptCoverageData;
 
     public PieChartData() {
         title = "";
     }
 
+    /**
+     * Creates the pie chart data of a summary, with the title of its report
+     *
+     * @param summary the coverage summary
+     */
+    PieChartData(CoverageSummary summary) {
+        title = summary.getTitle();
+        coverageData = new Object[Constants.COVERAGE_DATA_ROWS][];
+        coverageData[0] = new Object[]{Constants.COVERAGE_DATA_TITLE, Constants.COVERAGE_DATA_UNIT};
+        coverageData[1] = new Object[]{Constants.COVERED_LINES_LABEL, (double) summary.getCoveredLines()};
+        coverageData[2] = new Object[]{Constants.UNCOVERED_LINES_LABEL, (double) summary.getUncoveredLines()};
+
+        data = new Object[Constants.DATA_ROWS][];
+        data[0] = new Object[]{Constants.COVERAGE_DATA_TITLE, Constants.COVERAGE_DATA_UNIT};
+        for (int i = 0; i < summary.getBandCount(); i++) {
+            data[i + 1] = new Object[]{summary.getBands().getLabel(i), (double) summary.getFileCount(i)};
+        }
+        this.summary = summary;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -40,6 +63,8 @@ public class PieChartData {
 
     public void setData(Object[][] data) {
         this.data = data;
+        this.summary = null;
+        this.javascriptData = null;
     }
 
     public Object[][] getCoverageData() {
@@ -48,53 +73,50 @@ public class PieChartData {
 
     public void setCoverageData(Object[][] coverageData) {
         this.coverageData = coverageData;
+        this.summary = null;
+        this.javascriptCoverageData = null;
     }
 
     /**
-     * Gets coverage percentage
+     * Gets the summary of the data, it is built the first time it is requested
+     *
+     * @return the summary or null if there are not coverage data
      */
-    public double getPercentage() {
-        double percentage = 0;
-        if (coverageDataExists()) {
-            Double coveredLines = coverageData[1][1] instanceof Double ? (Double) coverageData[1][1] :
-                    coverageData[1][1] instanceof Integer ? (Integer) coverageData[1][1] : 0;
-            Double uncoveredLines = coverageData[2][1] instanceof Double ? (Double) coverageData[2][1] :
-                    coverageData[2][1] instanceof Integer ? (Integer) coverageData[2][1] : 0;
-            Double totalLines = coveredLines + uncoveredLines;
-            percentage = totalLines != 0? (coveredLines * 100.0f) / totalLines:0;
+    public CoverageSummary getSummary() {
+        CoverageSummary result = summary;
+        if (null == result) {
+            result = CoverageSummary.fromPieChartData(this);
+            summary = result;
         }
+        return result;
+    }
 
-        return percentage;
+    /**
+     * Gets coverage percentage
+     */
+    public double getPercentage() {
+        CoverageSummary result = getSummary();
+        return null == result ? 0 : result.getPercentage();
     }
 
     public String getCoveragePercentStatus() {
-        double coveragePercent = this.getPercentage();
-        String status = null;
-        if (coveragePercent < 75) {
-            status = "Danger";
-        } else if (coveragePercent < 80) {
-            status = "Risk";
-        } else if (coveragePercent < 75) {
-            status = "Danger";
-        } else if (coveragePercent < 95) {
-            status = "Acceptable";
-        } else {
-            status = "Safe";
-        }
-        return status;
+        CoverageSummary result = getSummary();
+        return null == result ? CoverageBands.DEFAULT.getName(0) : result.getStatus();
     }
 
     public String getFileCoverageStatus() {
-        StringBuilder result = new StringBuilder();
-        for (Integer i = 1; i < this.data.length; i++) {
-            if (null != this.data[i]) {
-                result.append(this.data[i][0]);
-                result.append(" = ");
-                result.append(Double.valueOf(String.valueOf(this.data[i][1])).intValue());
-                result.append(" files. ");
+        CoverageSummary result = getSummary();
+        if (null != result && dataExists()) {
+            return result.getFileCoverageStatus();
+        }
+        StringBuilder status = new StringBuilder();
+        for (int i = 1; null != data && i < data.length; i++) {
+            if (null != data[i]) {
+                status.append(data[i][0]).append(" = ");
+                status.append(data[i][1] instanceof Number ? ((Number) data[i][1]).intValue() : 0).append(" files. ");
             }
         }
-        return result.toString();
+        return status.toString();
     }
 
     /**
@@ -126,23 +148,46 @@ public class PieChartData {
     }
 
     /**
-     * Gets a rounded float number
+     * Gets a rounded float number, the percentage of the summary with two decimals is rounded once by the summary
      *
      * @param value the float number
      * @param scale decimal numbers
      * @return a rounded float number
      */
     public double getRoundedValue(double value, int scale) {
-        BigDecimal roundedValue = new BigDecimal(value).setScale(scale, BigDecimal.ROUND_HALF_UP);
-        return roundedValue.doubleValue();
+        CoverageSummary result = getSummary();
+        if (null != result && scale == 2 && value == result.getPercentage()) {
+            return result.getRoundedPercentage();
+        }
+        return CoverageSummary.round(value, scale);
     }
 
     /**
      * Gets an array list for javascript code
      *
-     * @param data the array was getting from JSON file
+     * @param data the array was getting from JSON file, the lists of the data of this instance are kept
      */
     public ArrayList<ArrayList> getDataForJavascript(Object[][] data) {
+        if (data == this.data && null != data) {
+            ArrayList<ArrayList> result = javascriptData;
+            if (null == result) {
+                result = toJavascript(data);
+                javascriptData = result;
+            }
+            return result;
+        }
+        if (data == this.coverageData && null != data) {
+            ArrayList<ArrayList> result = javascriptCoverageData;
+            if (null == result) {
+                result = toJavascript(data);
+                javascriptCoverageData = result;
+            }
+            return result;
+        }
+        return toJavascript(data);
+    }
+
+    private static ArrayList<ArrayList> toJavascript(Object[][] data) {
         ArrayList<ArrayList> newData = new ArrayList<ArrayList>();
         for (int i = 0; i < data.length; i++) {
             Object[] list = data[i];
@@ -164,16 +209,25 @@ public class PieChartData {
     }
 
     /**
-     * Gets a new instance from path JSON file
+     * Gets a new instance from path JSON file, the file is read as a stream
      *
      * @param path JSON file path
      */
-    public static PieChartData newInstance(String path) throws FileNotFoundException {
+    public static PieChartData newInstance(String path) throws IOException {
+        long start = System.nanoTime();
         PieChartData pieChartData = new PieChartData();
-        if (new File(path).exists()) {
-            Gson gson = new Gson();
-            pieChartData = gson.fromJson(new FileReader(path), PieChartData.class);
+        File report = new File(path);
+        if (report.exists()) {
+            EnforceMetrics.counter(EnforceMetrics.REPORT_BYTES).add(report.length());
+            CoverageReportParser parser = new CoverageReportParser();
+            CoverageSummary summary = parser.parse(report);
+            if (null != summary) {
+                pieChartData = summary.toPieChartData();
+            } else {
+                pieChartData.setTitle(parser.getTitle());
+            }
         }
+        EnforceMetrics.timer(EnforceMetrics.PIE_CHART_DATA_NEW_INSTANCE).updateSince(start);
         return pieChartData;
     }
 }
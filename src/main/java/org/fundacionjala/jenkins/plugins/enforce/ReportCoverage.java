@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import java.io.Serializable;
+
+/**
+ * Represents the coverage of one of the reports published by a build, it is kept for the per report breakdown.
+ */
+public final class ReportCoverage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+    private final CoverageSummary summary;
+
+    /**
+     * Creates the coverage of a report
+     *
+     * @param path    the report path relative to the workspace
+     * @param summary the coverage of the report
+     */
+    public ReportCoverage(String path, CoverageSummary summary) {
+        this.path = path;
+        this.summary = summary;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public CoverageSummary getSummary() {
+        return summary;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Identifies the coverage reports published by a build: their paths, sizes, modification times and MD5 digests.
+ * A build whose reports have the same size and modification time as the previous build reuses its coverage without
+ * reading them, and one whose reports were rewritten with the same size reuses it when hashing them, without parsing
+ * them, finds the same content. The digests of the reports that are parsed are computed while they are parsed.
+ */
+public final class ReportFingerprint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String[] paths;
+    private final long[] sizes;
+    private final long[] lastModified;
+    private final String[] digests;
+
+    /**
+     * Creates the fingerprint of the reports
+     *
+     * @param paths        the report paths relative to the workspace
+     * @param sizes        the report sizes
+     * @param lastModified the report modification times
+     * @param digests      the MD5 digests of the reports in hexadecimal
+     */
+    public ReportFingerprint(String[] paths, long[] sizes, long[] lastModified, String[] digests) {
+        this.paths = paths.clone();
+        this.sizes = sizes.clone();
+        this.lastModified = lastModified.clone();
+        this.digests = digests.clone();
+    }
+
+    /**
+     * Creates the fingerprint of one report
+     */
+    public ReportFingerprint(String path, File report, String digest) {
+        this(new String[]{path}, new long[]{report.length()}, new long[]{report.lastModified()}, new String[]{digest});
+    }
+
+    /**
+     * Merges the fingerprints of several reports, in order
+     *
+     * @return the merged fingerprint or null if any of the reports does not have one
+     */
+    public static ReportFingerprint merge(List<ReportFingerprint> fingerprints) {
+        List<String> paths = new ArrayList<String>();
+        List<Long> sizes = new ArrayList<Long>();
+        List<Long> lastModified = new ArrayList<Long>();
+        List<String> digests = new ArrayList<String>();
+        for (ReportFingerprint fingerprint : fingerprints) {
+            if (null == fingerprint) {
+                return null;
+            }
+            for (int i = 0; i < fingerprint.paths.length; i++) {
+                paths.add(fingerprint.paths[i]);
+                sizes.add(fingerprint.sizes[i]);
+                lastModified.add(fingerprint.lastModified[i]);
+                digests.add(fingerprint.digests[i]);
+            }
+        }
+        return new ReportFingerprint(paths.toArray(new String[paths.size()]), toLongs(sizes), toLongs(lastModified),
+                digests.toArray(new String[digests.size()]));
+    }
+
+    private static long[] toLongs(List<Long> values) {
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Verifies if the reports of a workspace are the same files, by path, size and modification time
+     *
+     * @param workspace the workspace
+     * @param paths     the paths of the reports found in the workspace
+     */
+    public boolean hasSameFiles(File workspace, List<String> paths) {
+        if (!Arrays.asList(this.paths).equals(paths)) {
+            return false;
+        }
+        for (int i = 0; i < this.paths.length; i++) {
+            File report = resolve(workspace, this.paths[i]);
+            if (report.length() != sizes[i] || report.lastModified() != lastModified[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifies if the reports of a workspace have the same paths and sizes, their content can only be the same then
+     *
+     * @param workspace the workspace
+     * @param paths     the paths of the reports found in the workspace
+     */
+    public boolean hasSameSizes(File workspace, List<String> paths) {
+        if (!Arrays.asList(this.paths).equals(paths)) {
+            return false;
+        }
+        for (int i = 0; i < this.paths.length; i++) {
+            if (resolve(workspace, this.paths[i]).length() != sizes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the file of a report path, an absolute path is not resolved against the workspace
+     *
+     * @param workspace the workspace
+     * @param path      the report path, relative to the workspace or absolute
+     */
+    static File resolve(File workspace, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(workspace, path);
+    }
+
+    /**
+     * Fingerprints the reports of a workspace by streaming them through the digest, they are not parsed
+     *
+     * @param workspace the workspace
+     * @param paths     the paths of the reports
+     */
+    public static ReportFingerprint hash(File workspace, List<String> paths) throws IOException {
+        List<ReportFingerprint> fingerprints = new ArrayList<ReportFingerprint>(paths.size());
+        byte[] buffer = new byte[8192];
+        for (String path : paths) {
+            File report = resolve(workspace, path);
+            MessageDigest digest = newDigest();
+            InputStream input = new FileInputStream(report);
+            try {
+                for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                input.close();
+            }
+            fingerprints.add(new ReportFingerprint(path, report, toHex(digest.digest())));
+        }
+        return merge(fingerprints);
+    }
+
+    /**
+     * Verifies if the fingerprints are of reports with the same paths and content
+     */
+    public boolean hasSameContent(ReportFingerprint other) {
+        return null != other && Arrays.equals(paths, other.paths) && Arrays.equals(digests, other.digests);
+    }
+
+    /**
+     * Creates the digest used to fingerprint the reports
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("MD5 is not available", exception);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Gets the digest of the first report, to identify the fingerprint in the build log
+     */
+    @Override
+    public String toString() {
+        return paths.length == 1 ? digests[0] : digests[0] + " and " + (paths.length - 1) + " more reports";
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.model.Run;
+import org.fundacionjala.jenkins.plugins.enforce.metrics.Counter;
+import org.fundacionjala.jenkins.plugins.enforce.metrics.EnforceMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a value per build in a bounded, least recently used cache.
+ * The value of a build is loaded once even when several threads ask for it at the same time. A load that fails or
+ * finds no value is not kept, so the next request loads it again. A {@link Closeable} value, E.G. a mapped archive, is
+ * closed when it is evicted or invalidated.
+ *
+ * @param <V> the type of the cached values
+ */
+public final class RunCache<V> {
+
+    private static final Logger LOGGER = Logger.getLogger(RunCache.class.getName());
+
+    private final Map<String, FutureTask<V>> entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * Creates a cache
+     *
+     * @param name        the cache name in the hit and miss metrics
+     * @param maximumSize maximum amount of builds kept, the least recently used one is evicted first
+     */
+    public RunCache(String name, final int maximumSize) {
+        this.hits = EnforceMetrics.cacheHits(name);
+        this.misses = EnforceMetrics.cacheMisses(name);
+        this.entries = new LinkedHashMap<String, FutureTask<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FutureTask<V>> eldest) {
+                if (size() > maximumSize) {
+                    close(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the value of a build, it is loaded by the first thread that asks for it
+     *
+     * @param run    the build
+     * @param loader loads the value when it is not cached, it returns null when the build has no value
+     * @return the value of the build or null if it has no value
+     */
+    public V get(Run<?, ?> run, Callable<V> loader) throws IOException, InterruptedException {
+        return get(getKey(run), loader);
+    }
+
+    V get(String key, Callable<V> loader) throws IOException, InterruptedException {
+        FutureTask<V> task;
+        boolean owner = false;
+        synchronized (entries) {
+            task = entries.get(key);
+            if (null == task) {
+                task = new FutureTask<V>(loader);
+                entries.put(key, task);
+                owner = true;
+            }
+        }
+        if (owner) {
+            misses.inc();
+            task.run();
+        } else {
+            hits.inc();
+        }
+        try {
+            V value = task.get();
+            if (null == value) {
+                remove(key, task);
+            }
+            return value;
+        } catch (ExecutionException exception) {
+            remove(key, task);
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Drops the value of a build, it is loaded again the next time it is requested
+     *
+     * @param run the build
+     */
+    public void invalidate(Run<?, ?> run) {
+        invalidate(getKey(run));
+    }
+
+    void invalidate(String key) {
+        FutureTask<V> task;
+        synchronized (entries) {
+            task = entries.remove(key);
+        }
+        close(task);
+    }
+
+    private void remove(String key, FutureTask<V> task) {
+        synchronized (entries) {
+            if (entries.get(key) == task) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Closes the value of a task, a value that is still being loaded is not closed and its resources are released
+     * when it is collected
+     */
+    private static void close(FutureTask<?> task) {
+        if (null == task || !task.isDone() || task.isCancelled()) {
+            return;
+        }
+        try {
+            Object value = task.get();
+            if (value instanceof Closeable) {
+                ((Closeable) value).close();
+            }
+        } catch (ExecutionException exception) {
+            // a failed load has nothing to close
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Unable to close an evicted value", exception);
+        }
+    }
+
+    private static String getKey(Run<?, ?> run) {
+        return run.getExternalizableId();
+    }
+}
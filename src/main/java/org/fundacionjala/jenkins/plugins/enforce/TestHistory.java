@@ -0,0 +1,696 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.SuiteResult;
+import hudson.tasks.junit.TestResult;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the duration and the result of every test of the newest builds of a job, so the slowest and the flaky tests
+ * are found without loading the test results of old builds. Every build is a column of packed arrays indexed by test,
+ * appended to a binary file of the job when the build is published. A record stores the names of the tests seen for the
+ * first time and then the result of each test by its position in the name table.
+ * <p>
+ * The columns of a job are read from its file when they are needed and only the histories of the
+ * {@link Constants#TEST_HISTORY_CACHE_SIZE} jobs used last are kept in memory.
+ */
+public final class TestHistory {
+
+    static final String FILE_NAME = "enforce-test-history.bin";
+    private static final int MAGIC = 0x454E5448;
+    private static final int VERSION = 1;
+    private static final Logger LOGGER = Logger.getLogger(TestHistory.class.getName());
+
+    public static final byte ABSENT = 0;
+    public static final byte PASSED = 1;
+    public static final byte FAILED = 2;
+    public static final byte SKIPPED = 3;
+
+    private static final ConcurrentMap<String, TestHistory> HISTORIES = new ConcurrentHashMap<String, TestHistory>();
+    private static final Map<TestHistory, Boolean> LOADED = new LinkedHashMap<TestHistory, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TestHistory, Boolean> eldest) {
+            if (size() > Constants.TEST_HISTORY_CACHE_SIZE) {
+                eldest.getKey().data = null;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final File file;
+    private final int maxBuilds;
+    private volatile Data data;
+    private long version;
+
+    TestHistory(File file, int maxBuilds) {
+        this.file = file;
+        this.maxBuilds = maxBuilds;
+    }
+
+    /**
+     * Gets the test history of a job
+     *
+     * @param job the job that publishes coverage
+     * @return the history stored in the job directory, it is kept by job full name
+     */
+    public static TestHistory of(Job<?, ?> job) {
+        File file = new File(job.getRootDir(), FILE_NAME);
+        String key = job.getFullName();
+        TestHistory history = HISTORIES.get(key);
+        while (null == history || !history.file.equals(file)) {
+            TestHistory created = new TestHistory(file, Constants.TEST_HISTORY_MAX_BUILDS);
+            if (null == history ? null == HISTORIES.putIfAbsent(key, created) : HISTORIES.replace(key, history, created)) {
+                return created;
+            }
+            history = HISTORIES.get(key);
+        }
+        return history;
+    }
+
+    /**
+     * Drops the histories of a deleted or renamed job or of the jobs of a deleted or renamed folder
+     *
+     * @param fullName the former full name of the job or folder
+     */
+    static void forget(String fullName) {
+        for (Iterator<Map.Entry<String, TestHistory>> entries = HISTORIES.entrySet().iterator(); entries.hasNext(); ) {
+            Map.Entry<String, TestHistory> entry = entries.next();
+            if (entry.getKey().equals(fullName) || entry.getKey().startsWith(fullName + "/")) {
+                entries.remove();
+                entry.getValue().unload();
+            }
+        }
+    }
+
+    /**
+     * Adds the JUnit results of a build to the history of its job, unless they were already added. They are added
+     * when the build completes, so the results published after the coverage are in the history too.
+     *
+     * @param run the build
+     */
+    public static void record(Run<?, ?> run) throws IOException {
+        Results results = getResults(run);
+        if (null != results) {
+            TestHistory history = of(run.getParent());
+            synchronized (history) {
+                if (!history.contains(run.getNumber())) {
+                    history.append(run.getNumber(), results);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the JUnit results of a build
+     *
+     * @param run the build
+     * @return the results or null if the build did not publish JUnit results
+     */
+    static Results getResults(Run<?, ?> run) {
+        AbstractTestResultAction<?> testResultAction = run.getAction(AbstractTestResultAction.class);
+        Object result = null == testResultAction ? null : testResultAction.getResult();
+        return result instanceof TestResult ? getResults((TestResult) result) : null;
+    }
+
+    private static Results getResults(TestResult testResult) {
+        Results results = new Results();
+        for (SuiteResult suite : testResult.getSuites()) {
+            for (CaseResult test : suite.getCases()) {
+                byte status = test.isSkipped() ? SKIPPED : test.isFailed() ? FAILED : PASSED;
+                results.add(test.getFullName(), Math.round(test.getDuration() * 1000), status);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Adds the test results of a build, the file is only rewritten when the build is not the newest one or when the
+     * file keeps too many builds that are out of the history
+     *
+     * @param number  the build number
+     * @param results the results of the tests of the build
+     */
+    public synchronized void append(int number, Results results) throws IOException {
+        Data data = load();
+        List<String> added = new ArrayList<String>();
+        boolean newest = data.columns.isEmpty() || number > data.columns.get(data.columns.size() - 1).buildNumber;
+        Column column = addColumn(data, number, results, added);
+        if (newest && data.complete && file.exists() && data.records < 2 * maxBuilds) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            try {
+                writeRecord(output, column, added);
+            } finally {
+                output.close();
+            }
+            data.records++;
+        } else {
+            write(data);
+        }
+    }
+
+    /**
+     * Adds the test results of several builds that are not in the history yet, E.G. old builds, and rewrites the
+     * file once
+     *
+     * @param results the results of the tests of every build by build number
+     * @return the builds added
+     */
+    public synchronized int appendAll(Map<Integer, Results> results) throws IOException {
+        Data data = load();
+        int appended = 0;
+        for (Map.Entry<Integer, Results> entry : results.entrySet()) {
+            if (!contains(entry.getKey())) {
+                addColumn(data, entry.getKey(), entry.getValue(), new ArrayList<String>());
+                appended++;
+            }
+        }
+        if (appended > 0) {
+            write(data);
+        }
+        return appended;
+    }
+
+    /**
+     * Adds the column of a build in order, the oldest builds are dropped when there are too many
+     *
+     * @param added receives the names of the tests seen for the first time
+     */
+    private Column addColumn(Data data, int number, Results results, List<String> added) {
+        version++;
+        int[] testIds = new int[results.size()];
+        for (int i = 0; i < testIds.length; i++) {
+            testIds[i] = data.getId(results.names.get(i), added);
+        }
+        Column column = new Column(number, data.names.size());
+        for (int i = 0; i < testIds.length; i++) {
+            column.durations[testIds[i]] = results.durations[i];
+            column.statuses[testIds[i]] = results.statuses[i];
+        }
+        List<Column> columns = data.columns;
+        boolean newest = columns.isEmpty() || number > columns.get(columns.size() - 1).buildNumber;
+        data.removeColumn(number);
+        columns.add(column);
+        if (!newest) {
+            Collections.sort(columns);
+        }
+        while (columns.size() > maxBuilds) {
+            columns.remove(0);
+        }
+        return column;
+    }
+
+    /**
+     * Drops a deleted build from the history, the file is only rewritten when the build is one of the newest builds
+     * it keeps
+     *
+     * @param number the deleted build number
+     */
+    public synchronized void remove(int number) throws IOException {
+        version++;
+        Data data = load();
+        if (data.removeColumn(number)) {
+            write(data);
+        }
+    }
+
+    /**
+     * Gets a counter that changes every time a build is added or removed, it starts again when Jenkins restarts
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Verifies if the history has the results of a build
+     */
+    public synchronized boolean contains(int number) throws IOException {
+        List<Column> columns = load().columns;
+        for (int i = columns.size() - 1; i >= 0; i--) {
+            if (columns.get(i).buildNumber == number) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the amount of builds in the history
+     */
+    public synchronized int getBuildCount() throws IOException {
+        return load().columns.size();
+    }
+
+    /**
+     * Gets the tests with the greatest average duration, skipped runs are not counted
+     *
+     * @param count  maximum amount of tests
+     * @param builds amount of newest builds considered
+     * @return the tests, slowest first
+     */
+    public synchronized List<TestStats> getSlowest(int count, int builds) throws IOException {
+        return top(getStats(builds), count, new Comparator<TestStats>() {
+            public int compare(TestStats first, TestStats second) {
+                int result = Double.compare(first.getAverageDuration(), second.getAverageDuration());
+                return 0 != result ? result : second.getName().compareTo(first.getName());
+            }
+        }, false);
+    }
+
+    /**
+     * Gets the tests that passed and failed in the newest builds, the ones that flipped between both results more
+     * often come first
+     *
+     * @param count  maximum amount of tests
+     * @param builds amount of newest builds considered
+     * @return the flaky tests, most flaky first
+     */
+    public synchronized List<TestStats> getFlaky(int count, int builds) throws IOException {
+        return top(getStats(builds), count, new Comparator<TestStats>() {
+            public int compare(TestStats first, TestStats second) {
+                int result = first.getFlips() - second.getFlips();
+                if (0 == result) {
+                    result = first.getFailures() - second.getFailures();
+                }
+                return 0 != result ? result : second.getName().compareTo(first.getName());
+            }
+        }, true);
+    }
+
+    private static List<TestStats> top(List<TestStats> stats, int count, Comparator<TestStats> comparator, boolean flaky) {
+        PriorityQueue<TestStats> queue = new PriorityQueue<TestStats>(Math.max(1, count), comparator);
+        for (TestStats test : stats) {
+            if (flaky && !test.isFlaky() || !flaky && 0 == test.getRuns()) {
+                continue;
+            }
+            queue.add(test);
+            if (queue.size() > count) {
+                queue.poll();
+            }
+        }
+        List<TestStats> result = new ArrayList<TestStats>(queue);
+        Collections.sort(result, Collections.reverseOrder(comparator));
+        return result;
+    }
+
+    /**
+     * Aggregates the results of every test in the newest builds, it reads the packed columns once
+     */
+    private List<TestStats> getStats(int builds) throws IOException {
+        Data data = load();
+        List<String> names = data.names;
+        List<Column> columns = data.columns;
+        int tests = names.size();
+        long[] totalDurations = new long[tests];
+        int[] maxDurations = new int[tests];
+        int[] lastDurations = new int[tests];
+        int[] runs = new int[tests];
+        int[] failures = new int[tests];
+        int[] flips = new int[tests];
+        byte[] lastStatuses = new byte[tests];
+        for (int c = Math.max(0, columns.size() - builds); c < columns.size(); c++) {
+            Column column = columns.get(c);
+            for (int test = 0; test < column.statuses.length; test++) {
+                byte status = column.statuses[test];
+                if (PASSED != status && FAILED != status) {
+                    continue;
+                }
+                int duration = column.durations[test];
+                totalDurations[test] += duration;
+                maxDurations[test] = Math.max(maxDurations[test], duration);
+                lastDurations[test] = duration;
+                runs[test]++;
+                if (FAILED == status) {
+                    failures[test]++;
+                }
+                if (ABSENT != lastStatuses[test] && status != lastStatuses[test]) {
+                    flips[test]++;
+                }
+                lastStatuses[test] = status;
+            }
+        }
+        List<TestStats> stats = new ArrayList<TestStats>(tests);
+        for (int test = 0; test < tests; test++) {
+            if (runs[test] > 0) {
+                stats.add(new TestStats(names.get(test), runs[test], failures[test], flips[test],
+                        (double) totalDurations[test] / runs[test], maxDurations[test], lastDurations[test]));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the columns of the history, they are read from the file the first time and again after they were evicted
+     * by the histories of other jobs. Reading never rewrites the file, a record cut by a crash is dropped and the
+     * file is rewritten by the next build that is added.
+     */
+    private Data load() throws IOException {
+        Data current = data;
+        if (null == current) {
+            current = read();
+            data = current;
+        }
+        synchronized (LOADED) {
+            LOADED.put(this, Boolean.TRUE);
+        }
+        return current;
+    }
+
+    /**
+     * Verifies if the columns of the history are kept in memory
+     */
+    boolean isLoaded() {
+        return null != data;
+    }
+
+    /**
+     * Drops the columns kept in memory, they are read again from the file when they are needed
+     */
+    private void unload() {
+        synchronized (LOADED) {
+            LOADED.remove(this);
+        }
+        data = null;
+    }
+
+    private Data read() throws IOException {
+        Data read = new Data();
+        if (!file.exists()) {
+            return read;
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a test history file");
+            }
+            while (true) {
+                int number;
+                try {
+                    number = input.readInt();
+                } catch (EOFException exception) {
+                    break;
+                }
+                Column column = read.readRecord(input, number);
+                read.records++;
+                read.removeColumn(number);
+                read.columns.add(column);
+            }
+        } catch (EOFException exception) {
+            LOGGER.log(Level.WARNING, "The last record of " + file + " is incomplete, it is dropped", exception);
+            read.complete = false;
+        } finally {
+            input.close();
+        }
+        Collections.sort(read.columns);
+        while (read.columns.size() > maxBuilds) {
+            read.columns.remove(0);
+        }
+        return read;
+    }
+
+    private static void writeRecord(DataOutputStream output, Column column, List<String> added) throws IOException {
+        output.writeInt(column.buildNumber);
+        output.writeInt(added.size());
+        for (String name : added) {
+            output.writeUTF(name);
+        }
+        int results = 0;
+        for (byte status : column.statuses) {
+            if (ABSENT != status) {
+                results++;
+            }
+        }
+        output.writeInt(results);
+        for (int id = 0; id < column.statuses.length; id++) {
+            if (ABSENT != column.statuses[id]) {
+                output.writeInt(id);
+                output.writeInt(column.durations[id]);
+                output.writeByte(column.statuses[id]);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with the builds of the history, the tests that are not in any of them are dropped and the
+     * others are numbered again
+     */
+    private void write(Data data) throws IOException {
+        List<String> names = data.names;
+        List<Column> columns = data.columns;
+        List<String> keptNames = new ArrayList<String>();
+        Map<String, Integer> keptIds = new HashMap<String, Integer>();
+        List<Column> keptColumns = new ArrayList<Column>(columns.size());
+        File temporary = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            for (Column column : columns) {
+                List<String> added = new ArrayList<String>();
+                int[] newIds = new int[column.statuses.length];
+                for (int id = 0; id < column.statuses.length; id++) {
+                    if (ABSENT != column.statuses[id]) {
+                        String name = names.get(id);
+                        Integer newId = keptIds.get(name);
+                        if (null == newId) {
+                            newId = keptNames.size();
+                            keptNames.add(name);
+                            keptIds.put(name, newId);
+                            added.add(name);
+                        }
+                        newIds[id] = newId;
+                    }
+                }
+                Column kept = new Column(column.buildNumber, keptNames.size());
+                for (int id = 0; id < column.statuses.length; id++) {
+                    if (ABSENT != column.statuses[id]) {
+                        kept.durations[newIds[id]] = column.durations[id];
+                        kept.statuses[newIds[id]] = column.statuses[id];
+                    }
+                }
+                writeRecord(output, kept, added);
+                keptColumns.add(kept);
+            }
+        } finally {
+            output.close();
+        }
+        AtomicFiles.replace(temporary, file);
+        data.names = keptNames;
+        data.ids = keptIds;
+        data.columns = keptColumns;
+        data.records = keptColumns.size();
+        data.complete = true;
+    }
+
+    /**
+     * Keeps the name table and the columns of the builds of the history while it is in memory
+     */
+    private static final class Data {
+
+        private List<String> names = new ArrayList<String>();
+        private Map<String, Integer> ids = new HashMap<String, Integer>();
+        private List<Column> columns = new ArrayList<Column>();
+        private int records;
+        private boolean complete = true;
+
+        private int getId(String name, List<String> added) {
+            Integer id = ids.get(name);
+            if (null == id) {
+                id = names.size();
+                names.add(name);
+                ids.put(name, id);
+                added.add(name);
+            }
+            return id;
+        }
+
+        /**
+         * Removes the column of a build
+         *
+         * @return true if the history had the build
+         */
+        private boolean removeColumn(int number) {
+            boolean removed = false;
+            for (int i = columns.size() - 1; i >= 0; i--) {
+                if (columns.get(i).buildNumber == number) {
+                    columns.remove(i);
+                    removed = true;
+                }
+            }
+            return removed;
+        }
+
+        private Column readRecord(DataInputStream input, int number) throws IOException {
+            for (int added = input.readInt(); added > 0; added--) {
+                String name = input.readUTF();
+                ids.put(name, names.size());
+                names.add(name);
+            }
+            Column column = new Column(number, names.size());
+            for (int results = input.readInt(); results > 0; results--) {
+                int id = input.readInt();
+                column.durations[id] = input.readInt();
+                column.statuses[id] = input.readByte();
+            }
+            return column;
+        }
+    }
+
+    /**
+     * Collects the test results of a build before they are added to the history
+     */
+    public static final class Results {
+
+        private final List<String> names = new ArrayList<String>();
+        private int[] durations = new int[64];
+        private byte[] statuses = new byte[64];
+
+        /**
+         * Adds the result of a test, a test added twice keeps its last result
+         *
+         * @param name           the test full name
+         * @param durationMillis the test duration in milliseconds
+         * @param status         PASSED, FAILED or SKIPPED
+         */
+        public void add(String name, int durationMillis, byte status) {
+            int index = names.size();
+            if (index == durations.length) {
+                durations = Arrays.copyOf(durations, 2 * index);
+                statuses = Arrays.copyOf(statuses, 2 * index);
+            }
+            names.add(name);
+            durations[index] = Math.max(0, durationMillis);
+            statuses[index] = status;
+        }
+
+        public int size() {
+            return names.size();
+        }
+    }
+
+    /**
+     * Represents the results of the tests of one build, indexed by the position of the test in the name table
+     */
+    private static final class Column implements Comparable<Column> {
+
+        private final int buildNumber;
+        private final int[] durations;
+        private final byte[] statuses;
+
+        Column(int buildNumber, int tests) {
+            this.buildNumber = buildNumber;
+            this.durations = new int[tests];
+            this.statuses = new byte[tests];
+        }
+
+        public int compareTo(Column other) {
+            return buildNumber < other.buildNumber ? -1 : buildNumber == other.buildNumber ? 0 : 1;
+        }
+    }
+
+    /**
+     * Represents the results of a test in the newest builds of the history
+     */
+    public static final class TestStats {
+
+        private final String name;
+        private final int runs;
+        private final int failures;
+        private final int flips;
+        private final double averageDuration;
+        private final int maxDuration;
+        private final int lastDuration;
+
+        TestStats(String name, int runs, int failures, int flips, double averageDuration, int maxDuration, int lastDuration) {
+            this.name = name;
+            this.runs = runs;
+            this.failures = failures;
+            this.flips = flips;
+            this.averageDuration = averageDuration;
+            this.maxDuration = maxDuration;
+            this.lastDuration = lastDuration;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the amount of builds that ran the test, skipped runs are not counted
+         */
+        public int getRuns() {
+            return runs;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * Gets how many times the test passed after failing or failed after passing
+         */
+        public int getFlips() {
+            return flips;
+        }
+
+        /**
+         * Verifies if the test passed and failed
+         */
+        public boolean isFlaky() {
+            return failures > 0 && failures < runs;
+        }
+
+        /**
+         * Gets the average duration in milliseconds
+         */
+        public double getAverageDuration() {
+            return averageDuration;
+        }
+
+        /**
+         * Gets the average duration in whole milliseconds
+         */
+        public long getRoundedAverageDuration() {
+            return Math.round(averageDuration);
+        }
+
+        public int getMaxDuration() {
+            return maxDuration;
+        }
+
+        public int getLastDuration() {
+            return lastDuration;
+        }
+    }
+}
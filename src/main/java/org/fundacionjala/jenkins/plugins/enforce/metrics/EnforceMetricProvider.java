@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publishes the plugin metrics as gauges in the Metrics plugin registry, it is only loaded when that plugin is
+ * installed.
+ */
+@Extension(optional = true)
+public class EnforceMetricProvider extends MetricProvider {
+
+    @Override
+    public MetricSet getMetricSet() {
+        final Map<String, Metric> metrics = new HashMap<String, Metric>();
+        for (Map.Entry<String, Timer> entry : EnforceMetrics.getTimers().entrySet()) {
+            final Timer timer = entry.getValue();
+            metrics.put(entry.getKey() + ".count", new Gauge<Long>() {
+                public Long getValue() {
+                    return timer.getCount();
+                }
+            });
+            metrics.put(entry.getKey() + ".mean", new Gauge<Double>() {
+                public Double getValue() {
+                    return timer.getMean();
+                }
+            });
+            metrics.put(entry.getKey() + ".p95", new Gauge<Double>() {
+                public Double getValue() {
+                    return timer.getPercentile(0.95);
+                }
+            });
+            metrics.put(entry.getKey() + ".max", new Gauge<Double>() {
+                public Double getValue() {
+                    return timer.getMax();
+                }
+            });
+        }
+        for (Map.Entry<String, Counter> entry : EnforceMetrics.getCounters().entrySet()) {
+            final Counter counter = entry.getValue();
+            metrics.put(entry.getKey(), new Gauge<Long>() {
+                public Long getValue() {
+                    return counter.getCount();
+                }
+            });
+        }
+        return new MetricSet() {
+            public Map<String, Metric> getMetrics() {
+                return metrics;
+            }
+        };
+    }
+}
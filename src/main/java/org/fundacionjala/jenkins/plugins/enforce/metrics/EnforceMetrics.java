@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.metrics;
+
+import org.fundacionjala.jenkins.plugins.enforce.Constants;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the timers and counters of the plugin hot paths. The known metrics are created up front, so they are
+ * all listed by the JSON endpoint and the Metrics plugin even before they are first updated. The timers are global,
+ * the jobs with the slowest publications are kept apart in {@link #slowestPublishers()}.
+ */
+public final class EnforceMetrics {
+
+    public static final String PUBLISHER_PERFORM = "enforce.publisher.perform";
+    public static final String REPORT_PARSE = "enforce.report.parse";
+    public static final String REPORT_BYTES = "enforce.report.bytes";
+    public static final String REPORT_FILES = "enforce.report.files";
+    public static final String REPORT_REUSED = "enforce.report.reused";
+    public static final String PIE_CHART_DATA_NEW_INSTANCE = "enforce.pieChartData.newInstance";
+    public static final String PROJECT_PIE_CHART_DATA = "enforce.projectAction.getPieChartData";
+    public static final String MACRO_RENDER = "enforce.macro.render";
+    public static final String MACRO_OUTPUT_LENGTH = "enforce.macro.output.length";
+    public static final String MACRO_CACHE_HITS = "enforce.macro.cache.hits";
+    public static final String MACRO_CACHE_MISSES = "enforce.macro.cache.misses";
+    public static final String API_RESPONSES = "enforce.api.responses";
+    public static final String API_NOT_MODIFIED = "enforce.api.notModified";
+    public static final String CACHE_PREFIX = "enforce.cache.";
+    public static final String[] CACHE_NAMES = {"classIndexes", "archives", "testImpacts"};
+
+    private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<String, Timer>();
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<String, Counter>();
+    private static final SlowestJobs SLOWEST_PUBLISHERS = new SlowestJobs(Constants.METRICS_SLOWEST_JOBS);
+
+    static {
+        for (String name : new String[]{PUBLISHER_PERFORM, REPORT_PARSE, PIE_CHART_DATA_NEW_INSTANCE,
+                PROJECT_PIE_CHART_DATA, MACRO_RENDER}) {
+            timer(name);
+        }
+        for (String name : new String[]{REPORT_BYTES, REPORT_FILES, REPORT_REUSED, MACRO_OUTPUT_LENGTH, MACRO_CACHE_HITS,
+                MACRO_CACHE_MISSES, API_RESPONSES, API_NOT_MODIFIED}) {
+            counter(name);
+        }
+        for (String name : CACHE_NAMES) {
+            cacheHits(name);
+            cacheMisses(name);
+        }
+    }
+
+    private EnforceMetrics() {
+    }
+
+    /**
+     * Gets a timer, it is created the first time it is requested
+     */
+    public static Timer timer(String name) {
+        Timer timer = TIMERS.get(name);
+        if (null == timer) {
+            Timer created = new Timer();
+            timer = TIMERS.putIfAbsent(name, created);
+            if (null == timer) {
+                timer = created;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Gets a counter, it is created the first time it is requested
+     */
+    public static Counter counter(String name) {
+        Counter counter = COUNTERS.get(name);
+        if (null == counter) {
+            Counter created = new Counter();
+            counter = COUNTERS.putIfAbsent(name, created);
+            if (null == counter) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public static Counter cacheHits(String cacheName) {
+        return counter(CACHE_PREFIX + cacheName + ".hits");
+    }
+
+    public static Counter cacheMisses(String cacheName) {
+        return counter(CACHE_PREFIX + cacheName + ".misses");
+    }
+
+    /**
+     * Gets the jobs whose publication of the coverage took the longest
+     */
+    public static SlowestJobs slowestPublishers() {
+        return SLOWEST_PUBLISHERS;
+    }
+
+    /**
+     * Gets every timer by name
+     */
+    public static SortedMap<String, Timer> getTimers() {
+        return Collections.unmodifiableSortedMap(new TreeMap<String, Timer>(TIMERS));
+    }
+
+    /**
+     * Gets every counter by name
+     */
+    public static SortedMap<String, Counter> getCounters() {
+        return Collections.unmodifiableSortedMap(new TreeMap<String, Counter>(COUNTERS));
+    }
+}
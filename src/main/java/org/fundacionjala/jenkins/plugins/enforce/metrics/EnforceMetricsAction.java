@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.metrics;
+
+import com.google.gson.stream.JsonWriter;
+import hudson.Extension;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import org.fundacionjala.jenkins.plugins.enforce.BackfillConfiguration;
+import org.fundacionjala.jenkins.plugins.enforce.BackfillProgress;
+import org.fundacionjala.jenkins.plugins.enforce.Constants;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Serves the plugin metrics as JSON to administrators. The timers and counters are global, the jobs with the slowest
+ * publications are listed with their slowest build.
+ */
+@Extension
+public class EnforceMetricsAction implements RootAction {
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return Constants.METRICS_DISPLAY_NAME;
+    }
+
+    public String getUrlName() {
+        return Constants.METRICS_URL_NAME;
+    }
+
+    /**
+     * Writes the timers (durations in milliseconds), the counters and the jobs with the slowest publications
+     */
+    public void doIndex(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        staplerResponse.setContentType("application/json;charset=UTF-8");
+        staplerResponse.setHeader("Cache-Control", "no-cache");
+        JsonWriter json = new JsonWriter(staplerResponse.getWriter());
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("timers").beginObject();
+        for (Map.Entry<String, Timer> entry : EnforceMetrics.getTimers().entrySet()) {
+            Timer timer = entry.getValue();
+            json.name(entry.getKey()).beginObject();
+            json.name("count").value(timer.getCount());
+            json.name("mean").value(timer.getMean());
+            json.name("p50").value(timer.getPercentile(0.5));
+            json.name("p95").value(timer.getPercentile(0.95));
+            json.name("p99").value(timer.getPercentile(0.99));
+            json.name("max").value(timer.getMax());
+            json.endObject();
+        }
+        json.endObject();
+        json.name("counters").beginObject();
+        for (Map.Entry<String, Counter> entry : EnforceMetrics.getCounters().entrySet()) {
+            json.name(entry.getKey()).value(entry.getValue().getCount());
+        }
+        json.endObject();
+        json.name("slowestPublishers").beginArray();
+        for (SlowestJobs.Entry entry : EnforceMetrics.slowestPublishers().getEntries()) {
+            json.beginObject();
+            json.name("job").value(entry.getJobName());
+            json.name("build").value(entry.getBuildNumber());
+            json.name("duration").value(entry.getDuration());
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Writes the progress of the backfill of old builds and the cursors of the jobs being backfilled
+     */
+    public void doBackfill(StaplerRequest staplerRequest, StaplerResponse staplerResponse) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        BackfillConfiguration configuration = BackfillConfiguration.get();
+        BackfillProgress progress = BackfillProgress.get();
+        staplerResponse.setContentType("application/json;charset=UTF-8");
+        staplerResponse.setHeader("Cache-Control", "no-cache");
+        JsonWriter json = new JsonWriter(staplerResponse.getWriter());
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("enabled").value(null != configuration && configuration.isEnabled());
+        json.name("jobs").value(progress.getJobCount());
+        json.name("doneJobs").value(progress.getDoneJobCount());
+        json.name("buildsVisited").value(progress.getBuildsVisited());
+        json.name("buildsBackfilled").value(progress.getBuildsBackfilled());
+        json.name("bytesRead").value(progress.getBytesRead());
+        json.name("errors").value(progress.getErrors());
+        json.name("running").beginObject();
+        for (Map.Entry<String, Integer> entry : progress.getRunningJobs().entrySet()) {
+            json.name(entry.getKey()).value(entry.getValue());
+        }
+        json.endObject();
+        json.endObject();
+        json.flush();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the jobs with the slowest runs of an operation, with the slowest run of each of them. Only a fixed number of
+ * jobs is kept, a job replaces the fastest one of them when its run is slower.
+ */
+public final class SlowestJobs {
+
+    private final int size;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * Creates the list
+     *
+     * @param size the maximum amount of jobs kept
+     */
+    SlowestJobs(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Records a run of the operation
+     *
+     * @param jobName     the job full name
+     * @param buildNumber the build number
+     * @param nanos       the duration in nanoseconds
+     */
+    public synchronized void update(String jobName, int buildNumber, long nanos) {
+        Entry previous = entries.get(jobName);
+        if (null != previous) {
+            if (nanos > previous.nanos) {
+                entries.put(jobName, new Entry(jobName, buildNumber, nanos));
+            }
+            return;
+        }
+        if (entries.size() >= size) {
+            Entry fastest = Collections.max(entries.values(), Entry.SLOWEST_FIRST);
+            if (nanos <= fastest.nanos) {
+                return;
+            }
+            entries.remove(fastest.jobName);
+        }
+        entries.put(jobName, new Entry(jobName, buildNumber, nanos));
+    }
+
+    /**
+     * Records a run of the operation that started at the given {@link System#nanoTime()}
+     */
+    public void updateSince(String jobName, int buildNumber, long startNanos) {
+        update(jobName, buildNumber, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Drops a job, E.G. when it is deleted
+     */
+    public synchronized void remove(String jobName) {
+        entries.remove(jobName);
+    }
+
+    /**
+     * Gets the jobs, the slowest first
+     */
+    public synchronized List<Entry> getEntries() {
+        List<Entry> result = new ArrayList<Entry>(entries.values());
+        Collections.sort(result, Entry.SLOWEST_FIRST);
+        return result;
+    }
+
+    /**
+     * The slowest run of a job
+     */
+    public static final class Entry {
+
+        private static final Comparator<Entry> SLOWEST_FIRST = new Comparator<Entry>() {
+            public int compare(Entry first, Entry second) {
+                return first.nanos == second.nanos ? first.jobName.compareTo(second.jobName)
+                        : first.nanos > second.nanos ? -1 : 1;
+            }
+        };
+
+        private final String jobName;
+        private final int buildNumber;
+        private final long nanos;
+
+        Entry(String jobName, int buildNumber, long nanos) {
+            this.jobName = jobName;
+            this.buildNumber = buildNumber;
+            this.nanos = nanos;
+        }
+
+        public String getJobName() {
+            return jobName;
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        /**
+         * Gets the duration in milliseconds
+         */
+        public double getDuration() {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
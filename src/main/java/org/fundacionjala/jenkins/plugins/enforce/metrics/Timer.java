@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how often an operation runs and how long it takes. The latencies are kept in a histogram of power of
+ * two microsecond buckets, so recording never allocates and percentiles are approximated by the bucket bounds.
+ */
+public final class Timer {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    Timer() {
+    }
+
+    /**
+     * Records a run of the operation
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void update(long nanos) {
+        long duration = Math.max(0, nanos);
+        count.incrementAndGet();
+        totalNanos.addAndGet(duration);
+        long max = maxNanos.get();
+        while (duration > max && !maxNanos.compareAndSet(max, duration)) {
+            max = maxNanos.get();
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(duration);
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+    }
+
+    /**
+     * Records a run of the operation that started at the given {@link System#nanoTime()}
+     */
+    public void updateSince(long startNanos) {
+        update(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the mean duration in milliseconds
+     */
+    public double getMean() {
+        long runs = count.get();
+        return runs == 0 ? 0 : totalNanos.get() / (double) runs / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Gets the longest duration in milliseconds
+     */
+    public double getMax() {
+        return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Gets the upper bound of the duration of a percentile of the runs, in milliseconds
+     *
+     * @param quantile the percentile as a value from 0 to 1
+     */
+    public double getPercentile(double quantile) {
+        long runs = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            runs += counts[i];
+        }
+        long target = (long) Math.ceil(quantile * runs);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return Math.min((1L << i) / 1000.0, getMax());
+            }
+        }
+        return 0;
+    }
+}
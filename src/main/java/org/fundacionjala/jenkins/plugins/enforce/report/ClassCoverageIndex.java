@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the coverage of every class of a report in columns sorted by name, with precomputed orders by percentage
+ * and by uncovered lines, so a page of classes is served without sorting or scanning the whole report.
+ */
+public final class ClassCoverageIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x454E4349;
+    private static final int VERSION = 1;
+
+    /**
+     * The orders a page of classes can be sorted by
+     */
+    public enum Sort {
+        NAME, PERCENTAGE, UNCOVERED
+    }
+
+    private final String[] names;
+    private final int[] coveredLines;
+    private final int[] uncoveredLines;
+    private final int[] byPercentage;
+    private final int[] byUncovered;
+
+    private ClassCoverageIndex(String[] names, int[] coveredLines, int[] uncoveredLines, int[] byPercentage, int[] byUncovered) {
+        this.names = names;
+        this.coveredLines = coveredLines;
+        this.uncoveredLines = uncoveredLines;
+        this.byPercentage = byPercentage;
+        this.byUncovered = byUncovered;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public int getCoveredLines(int index) {
+        return coveredLines[index];
+    }
+
+    public int getUncoveredLines(int index) {
+        return uncoveredLines[index];
+    }
+
+    /**
+     * Gets coverage percentage of a class
+     */
+    public double getPercentage(int index) {
+        long totalLines = (long) coveredLines[index] + uncoveredLines[index];
+        return totalLines != 0 ? coveredLines[index] * 100.0 / totalLines : 0;
+    }
+
+    /**
+     * Gets the position of a class by name
+     *
+     * @param name the class name
+     * @return the index of the class or a negative value if it is not in the report
+     */
+    public int indexOf(String name) {
+        return Arrays.binarySearch(names, name, NAME_ORDER);
+    }
+
+    /**
+     * Gets the classes whose name starts with a prefix, ignoring case
+     *
+     * @param prefix the name prefix, an empty prefix matches every class
+     * @return the [from, to) range of matching indexes
+     */
+    public int[] getPrefixRange(String prefix) {
+        if (null == prefix || prefix.isEmpty()) {
+            return new int[]{0, names.length};
+        }
+        int from = lowerBound(prefix);
+        int low = from;
+        int high = names.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (names[middle].regionMatches(true, 0, prefix, 0, prefix.length())) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return new int[]{from, low};
+    }
+
+    private int lowerBound(String value) {
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(names[middle], value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets a page of classes whose name starts with a prefix
+     *
+     * @param prefix     the name prefix, it can be empty
+     * @param sort       the order of the classes
+     * @param descending true to reverse the order
+     * @param offset     amount of matching classes skipped
+     * @param limit      maximum amount of classes returned
+     * @return the page as indexes of this index
+     */
+    public Page getPage(String prefix, Sort sort, boolean descending, int offset, int limit) {
+        int[] range = getPrefixRange(prefix);
+        int total = range[1] - range[0];
+        int from = Math.max(0, offset);
+        int count = Math.max(0, Math.min(limit, total - from));
+        int[] indexes = new int[count];
+        if (sort == Sort.NAME) {
+            for (int i = 0; i < count; i++) {
+                indexes[i] = descending ? range[1] - 1 - from - i : range[0] + from + i;
+            }
+            return new Page(total, indexes);
+        }
+        int[] order = sort == Sort.PERCENTAGE ? byPercentage : byUncovered;
+        int matched = 0;
+        int added = 0;
+        for (int i = 0; i < order.length && added < count; i++) {
+            int index = order[descending ? order.length - 1 - i : i];
+            if (index >= range[0] && index < range[1] && matched++ >= from) {
+                indexes[added++] = index;
+            }
+        }
+        return new Page(total, indexes);
+    }
+
+    /**
+     * Finds the classes whose coverage percentage is lower than in a baseline, in one pass over both indexes since
+     * they are sorted by name. Classes that are not in both indexes are not compared.
+     *
+     * @param baseline the index of the baseline build
+     * @return the regressed classes in name order
+     */
+    public List<Regression> findRegressions(ClassCoverageIndex baseline) {
+        List<Regression> regressions = new ArrayList<Regression>();
+        int current = 0;
+        int previous = 0;
+        while (current < names.length && previous < baseline.names.length) {
+            int order = NAME_ORDER.compare(names[current], baseline.names[previous]);
+            if (order < 0) {
+                current++;
+            } else if (order > 0) {
+                previous++;
+            } else {
+                double percentage = getPercentage(current);
+                double baselinePercentage = baseline.getPercentage(previous);
+                if (percentage < baselinePercentage) {
+                    regressions.add(new Regression(names[current], baselinePercentage, percentage));
+                }
+                current++;
+                previous++;
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Merges the indexes of several reports, a class published by more than one report keeps the coverage of the
+     * last report that lists it
+     *
+     * @param indexes the indexes of the reports, in the order of their paths
+     * @return the merged index or null if there are no indexes
+     */
+    public static ClassCoverageIndex merge(List<ClassCoverageIndex> indexes) {
+        if (indexes.size() == 1) {
+            return indexes.get(0);
+        }
+        Builder builder = new Builder();
+        Set<String> replaced = getReplacedNames(indexes);
+        for (int report = 0; report < indexes.size(); report++) {
+            ClassCoverageIndex index = indexes.get(report);
+            for (int i = 0; i < index.size(); i++) {
+                if (!replaced.contains(index.names[i]) || !isListedAfter(indexes, report, index.names[i])) {
+                    builder.add(index.names[i], index.coveredLines[i], index.uncoveredLines[i]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the coverage the merge of several reports leaves out, the classes of a report that a later report lists
+     * again
+     *
+     * @param indexes the indexes of the reports, in the order of their paths
+     * @return the replaced coverage or null if no class is listed by more than one report
+     */
+    public static ClassCoverageIndex getReplaced(List<ClassCoverageIndex> indexes) {
+        Set<String> replaced = getReplacedNames(indexes);
+        if (replaced.isEmpty()) {
+            return null;
+        }
+        Builder builder = new Builder();
+        for (int report = 0; report < indexes.size() - 1; report++) {
+            ClassCoverageIndex index = indexes.get(report);
+            for (int i = 0; i < index.size(); i++) {
+                if (replaced.contains(index.names[i]) && isListedAfter(indexes, report, index.names[i])) {
+                    builder.add(index.names[i], index.coveredLines[i], index.uncoveredLines[i]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the names listed by more than one report
+     */
+    private static Set<String> getReplacedNames(List<ClassCoverageIndex> indexes) {
+        Set<String> names = new HashSet<String>();
+        Set<String> replaced = new HashSet<String>();
+        for (ClassCoverageIndex index : indexes) {
+            for (String name : index.names) {
+                if (!names.add(name)) {
+                    replaced.add(name);
+                }
+            }
+        }
+        return replaced;
+    }
+
+    private static boolean isListedAfter(List<ClassCoverageIndex> indexes, int report, String name) {
+        for (int later = report + 1; later < indexes.size(); later++) {
+            if (indexes.get(later).indexOf(name) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Saves the index as columns
+     *
+     * @param file the index file
+     */
+    public void save(File file) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(names.length);
+            for (String name : names) {
+                output.writeUTF(name);
+            }
+            writeColumn(output, coveredLines);
+            writeColumn(output, uncoveredLines);
+            writeColumn(output, byPercentage);
+            writeColumn(output, byUncovered);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Loads an index saved by {@link #save(File)}
+     *
+     * @param file the index file
+     * @return the index
+     */
+    public static ClassCoverageIndex load(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a class coverage index");
+            }
+            int size = input.readInt();
+            String[] names = new String[size];
+            for (int i = 0; i < size; i++) {
+                names[i] = input.readUTF();
+            }
+            return new ClassCoverageIndex(names, readColumn(input, size), readColumn(input, size),
+                    readColumn(input, size), readColumn(input, size));
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void writeColumn(DataOutputStream output, int[] column) throws IOException {
+        for (int value : column) {
+            output.writeInt(value);
+        }
+    }
+
+    private static int[] readColumn(DataInputStream input, int size) throws IOException {
+        int[] column = new int[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = input.readInt();
+        }
+        return column;
+    }
+
+    private static final Comparator<String> NAME_ORDER = new Comparator<String>() {
+        public int compare(String first, String second) {
+            int result = String.CASE_INSENSITIVE_ORDER.compare(first, second);
+            return result != 0 ? result : first.compareTo(second);
+        }
+    };
+
+    /**
+     * Represents a page of classes
+     */
+    public static final class Page {
+
+        private final int total;
+        private final int[] indexes;
+
+        Page(int total, int[] indexes) {
+            this.total = total;
+            this.indexes = indexes;
+        }
+
+        /**
+         * Gets the amount of classes that match the prefix
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        public int[] getIndexes() {
+            return indexes;
+        }
+    }
+
+    /**
+     * Represents a class whose coverage is lower than in the baseline
+     */
+    public static final class Regression {
+
+        private final String name;
+        private final double baselinePercentage;
+        private final double percentage;
+
+        Regression(String name, double baselinePercentage, double percentage) {
+            this.name = name;
+            this.baselinePercentage = baselinePercentage;
+            this.percentage = percentage;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getBaselinePercentage() {
+            return baselinePercentage;
+        }
+
+        public double getPercentage() {
+            return percentage;
+        }
+    }
+
+    /**
+     * Builds an index from the files of a report while it is parsed
+     */
+    public static final class Builder implements CoverageReportHandler {
+
+        private String[] names = new String[256];
+        private int[] coveredLines = new int[256];
+        private int[] uncoveredLines = new int[256];
+        private int size;
+
+        public void onFile(FileCoverage file) {
+            if (null != file.getName()) {
+                add(file.getName(), (int) file.getCoveredLines(), (int) file.getUncoveredLines());
+            }
+        }
+
+        private void add(String name, int covered, int uncovered) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                coveredLines = Arrays.copyOf(coveredLines, size * 2);
+                uncoveredLines = Arrays.copyOf(uncoveredLines, size * 2);
+            }
+            names[size] = name;
+            coveredLines[size] = covered;
+            uncoveredLines[size] = uncovered;
+            size++;
+        }
+
+        /**
+         * Gets the index of the files received
+         *
+         * @return the index or null if the report did not have files
+         */
+        public ClassCoverageIndex build() {
+            if (size == 0) {
+                return null;
+            }
+            Integer[] byName = sequence(size);
+            Arrays.sort(byName, new Comparator<Integer>() {
+                public int compare(Integer first, Integer second) {
+                    return NAME_ORDER.compare(names[first], names[second]);
+                }
+            });
+            final String[] sortedNames = new String[size];
+            final int[] sortedCovered = new int[size];
+            final int[] sortedUncovered = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedNames[i] = names[byName[i]];
+                sortedCovered[i] = coveredLines[byName[i]];
+                sortedUncovered[i] = uncoveredLines[byName[i]];
+            }
+
+            final double[] percentages = new double[size];
+            for (int i = 0; i < size; i++) {
+                long totalLines = (long) sortedCovered[i] + sortedUncovered[i];
+                percentages[i] = totalLines != 0 ? sortedCovered[i] * 100.0 / totalLines : 0;
+            }
+            Integer[] byPercentage = sequence(size);
+            Arrays.sort(byPercentage, new Comparator<Integer>() {
+                public int compare(Integer first, Integer second) {
+                    int result = Double.compare(percentages[first], percentages[second]);
+                    return result != 0 ? result : first.compareTo(second);
+                }
+            });
+            Integer[] byUncovered = sequence(size);
+            Arrays.sort(byUncovered, new Comparator<Integer>() {
+                public int compare(Integer first, Integer second) {
+                    int result = sortedUncovered[first] < sortedUncovered[second] ? -1
+                            : sortedUncovered[first] == sortedUncovered[second] ? 0 : 1;
+                    return result != 0 ? result : first.compareTo(second);
+                }
+            });
+            return new ClassCoverageIndex(sortedNames, sortedCovered, sortedUncovered, toInts(byPercentage), toInts(byUncovered));
+        }
+
+        private static Integer[] sequence(int size) {
+            Integer[] values = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = i;
+            }
+            return values;
+        }
+
+        private static int[] toInts(Integer[] values) {
+            int[] result = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = values[i];
+            }
+            return result;
+        }
+    }
+}
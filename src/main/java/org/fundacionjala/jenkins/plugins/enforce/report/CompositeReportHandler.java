@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+/**
+ * Sends every file of a report to several handlers, in order.
+ */
+public final class CompositeReportHandler implements CoverageReportHandler {
+
+    private final CoverageReportHandler[] handlers;
+
+    public CompositeReportHandler(CoverageReportHandler... handlers) {
+        this.handlers = handlers.clone();
+    }
+
+    public void onFile(FileCoverage file) {
+        for (CoverageReportHandler handler : handlers) {
+            handler.onFile(file);
+        }
+    }
+}
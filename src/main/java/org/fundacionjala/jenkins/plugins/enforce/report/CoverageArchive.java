@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps the full coverage of a report, line numbers included, in a compact file of the build directory.
+ * <p>
+ * The classes are sorted by name and stored in deflated blocks of {@link #BLOCK_CLASSES} classes. In a block every
+ * name only keeps the characters it does not share with the previous one, the line counts are variable length
+ * integers and the covered and uncovered lines are {@link LineSet run-length encoded}. The file ends with the first
+ * name and the position of every block, so a reader maps the file and inflates only the block of the class it is
+ * asked for.
+ * <pre>
+ * magic, version, class count, block count, block index position
+ * block*: deflated (shared name length, name suffix, covered, uncovered, covered lines, uncovered lines)*
+ * block index: (first name, position, deflated length, length)*
+ * </pre>
+ * An opened archive keeps its file mapped until it is closed, the mapping is released once the reads in progress end.
+ */
+public final class CoverageArchive implements Closeable {
+
+    static final int BLOCK_CLASSES = 32;
+    private static final int MAGIC = 0x454E4341;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ByteBuffer buffer;
+    private int readers;
+    private boolean closed;
+    private final int size;
+    private final String[] firstNames;
+    private final long[] positions;
+    private final int[] deflatedLengths;
+    private final int[] lengths;
+
+    private CoverageArchive(ByteBuffer buffer, int size, String[] firstNames, long[] positions,
+                            int[] deflatedLengths, int[] lengths) {
+        this.buffer = buffer;
+        this.size = size;
+        this.firstNames = firstNames;
+        this.positions = positions;
+        this.deflatedLengths = deflatedLengths;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Opens an archive, the file is mapped and only its block index is read
+     *
+     * @param file the archive file
+     * @return the archive
+     */
+    public static CoverageArchive open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Reads an archive from its bytes
+     *
+     * @param bytes the archive, as built by {@link Builder#build()}
+     * @return the archive
+     */
+    public static CoverageArchive read(byte[] bytes) throws IOException {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    private static CoverageArchive read(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a coverage archive");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported coverage archive version " + version);
+        }
+        int size = buffer.getInt(8);
+        int blocks = buffer.getInt(12);
+        ByteBuffer index = buffer.duplicate();
+        index.position((int) buffer.getLong(16));
+        String[] firstNames = new String[blocks];
+        long[] positions = new long[blocks];
+        int[] deflatedLengths = new int[blocks];
+        int[] lengths = new int[blocks];
+        for (int block = 0; block < blocks; block++) {
+            firstNames[block] = readString(index);
+            positions[block] = index.getLong();
+            deflatedLengths[block] = index.getInt();
+            lengths[block] = index.getInt();
+        }
+        return new CoverageArchive(buffer, size, firstNames, positions, deflatedLengths, lengths);
+    }
+
+    /**
+     * Gets the number of classes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the coverage of a class, only the block of the class is inflated
+     *
+     * @param name the class name
+     * @return the coverage of the class or null if the archive does not have it
+     */
+    public ClassLines find(String name) throws IOException {
+        // the class can be at the end of the block before the first block that starts with a greater or equal name
+        int block = Math.max(0, lowerBound(name) - 1);
+        ByteBuffer source = acquire();
+        try {
+            for (; block < firstNames.length && firstNames[block].compareTo(name) <= 0; block++) {
+                ByteBuffer records = inflate(source, block);
+                String previous = "";
+                while (records.hasRemaining()) {
+                    String current = readName(records, previous);
+                    int comparison = current.compareTo(name);
+                    if (comparison == 0) {
+                        return readLines(records, current);
+                    }
+                    if (comparison > 0) {
+                        return null;
+                    }
+                    skipLines(records);
+                    previous = current;
+                }
+            }
+            return null;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Releases the mapped file, it is unmapped when the reads in progress end and the next reads fail
+     */
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            if (readers == 0) {
+                unmap();
+            }
+        }
+    }
+
+    private synchronized ByteBuffer acquire() throws IOException {
+        if (closed) {
+            throw new IOException("The coverage archive is closed");
+        }
+        readers++;
+        return buffer;
+    }
+
+    private synchronized void release() {
+        if (--readers == 0 && closed) {
+            unmap();
+        }
+    }
+
+    private void unmap() {
+        ByteBuffer mapped = buffer;
+        buffer = null;
+        if (!(mapped instanceof MappedByteBuffer)) {
+            return;
+        }
+        // there is no public API to unmap a file, Java 9 and newer unmap it with Unsafe and older versions with its cleaner
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafe = unsafeClass.getDeclaredField("theUnsafe");
+            unsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe.get(null), mapped);
+        } catch (Exception unsupported) {
+            try {
+                Method cleaner = mapped.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object value = cleaner.invoke(mapped);
+                value.getClass().getMethod("clean").invoke(value);
+            } catch (Exception exception) {
+                // the buffer cannot be unmapped, it is unmapped when it is collected
+            }
+        }
+    }
+
+    private int lowerBound(String name) {
+        int low = 0;
+        int high = firstNames.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (firstNames[middle].compareTo(name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private ByteBuffer inflate(ByteBuffer buffer, int block) throws IOException {
+        byte[] deflated = new byte[deflatedLengths[block]];
+        ByteBuffer source = buffer.duplicate();
+        source.position((int) positions[block]);
+        source.get(deflated);
+        byte[] records = new byte[lengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            int length = 0;
+            while (length < records.length && !inflater.finished()) {
+                int inflated = inflater.inflate(records, length, records.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != records.length) {
+                throw new IOException("The block " + block + " of the coverage archive is truncated");
+            }
+        } catch (DataFormatException exception) {
+            throw new IOException("The block " + block + " of the coverage archive is corrupted", exception);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(records);
+    }
+
+    private static String readName(ByteBuffer records, String previous) {
+        int shared = readVarint(records);
+        return previous.substring(0, shared) + readString(records);
+    }
+
+    private static ClassLines readLines(ByteBuffer records, String name) {
+        int covered = readVarint(records);
+        int uncovered = readVarint(records);
+        return new ClassLines(name, covered, uncovered, LineSet.read(records), LineSet.read(records));
+    }
+
+    private static void skipLines(ByteBuffer records) {
+        readVarint(records);
+        readVarint(records);
+        LineSet.skip(records);
+        LineSet.skip(records);
+    }
+
+    private static String readString(ByteBuffer input) {
+        byte[] bytes = new byte[readVarint(input)];
+        input.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static int readVarint(ByteBuffer input) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte current = input.get();
+            value |= (current & 0x7F) << shift;
+            if (current >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static void writeVarint(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream output, String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(output, bytes.length);
+        output.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * The coverage of a class with its covered and uncovered lines
+     */
+    public static final class ClassLines {
+
+        private final String name;
+        private final int coveredLines;
+        private final int uncoveredLines;
+        private final LineSet covered;
+        private final LineSet uncovered;
+
+        ClassLines(String name, int coveredLines, int uncoveredLines, LineSet covered, LineSet uncovered) {
+            this.name = name;
+            this.coveredLines = coveredLines;
+            this.uncoveredLines = uncoveredLines;
+            this.covered = covered;
+            this.uncovered = uncovered;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCoveredLines() {
+            return coveredLines;
+        }
+
+        public int getUncoveredLines() {
+            return uncoveredLines;
+        }
+
+        public LineSet getCovered() {
+            return covered;
+        }
+
+        public LineSet getUncovered() {
+            return uncovered;
+        }
+
+        /**
+         * Gets the covered line numbers, ascending
+         */
+        public int[] getCoveredLineNumbers() {
+            return covered.toArray();
+        }
+
+        /**
+         * Gets the uncovered line numbers, ascending
+         */
+        public int[] getUncoveredLineNumbers() {
+            return uncovered.toArray();
+        }
+
+        /**
+         * Gets the runs of covered and uncovered lines for the line view, ordered by their first line. The lines
+         * without coverage are not in any run, so the view does not depend on the length of the class.
+         */
+        public List<LineRange> getRanges() {
+            List<LineRange> ranges = new ArrayList<LineRange>(covered.getRunCount() + uncovered.getRunCount());
+            int coveredRun = 0;
+            int uncoveredRun = 0;
+            while (coveredRun < covered.getRunCount() || uncoveredRun < uncovered.getRunCount()) {
+                if (uncoveredRun == uncovered.getRunCount() || coveredRun < covered.getRunCount()
+                        && covered.getRunStart(coveredRun) <= uncovered.getRunStart(uncoveredRun)) {
+                    ranges.add(new LineRange(covered.getRunStart(coveredRun), covered.getRunEnd(coveredRun), true));
+                    coveredRun++;
+                } else {
+                    ranges.add(new LineRange(uncovered.getRunStart(uncoveredRun), uncovered.getRunEnd(uncoveredRun),
+                            false));
+                    uncoveredRun++;
+                }
+            }
+            return ranges;
+        }
+    }
+
+    /**
+     * Consecutive lines with the same coverage
+     */
+    public static final class LineRange {
+
+        private final int firstLine;
+        private final int lastLine;
+        private final boolean covered;
+
+        LineRange(int firstLine, int lastLine, boolean covered) {
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.covered = covered;
+        }
+
+        public int getFirstLine() {
+            return firstLine;
+        }
+
+        /**
+         * Gets the last line of the range, inclusive
+         */
+        public int getLastLine() {
+            return lastLine;
+        }
+
+        public boolean isCovered() {
+            return covered;
+        }
+
+        /**
+         * Gets the status of the lines for the line view: "covered" or "uncovered"
+         */
+        public String getStatus() {
+            return covered ? "covered" : "uncovered";
+        }
+    }
+
+    /**
+     * Builds an archive from the files of one or more reports while they are parsed. Every file is encoded when it
+     * is received, so only the compact records are kept until the archive is built.
+     */
+    public static final class Builder implements CoverageReportHandler {
+
+        private final List<Record> records = new ArrayList<Record>();
+        private final ByteArrayOutputStream encoder = new ByteArrayOutputStream();
+
+        public void onFile(FileCoverage file) {
+            if (null == file.getName()) {
+                return;
+            }
+            encoder.reset();
+            writeVarint(encoder, (int) file.getCoveredLines());
+            writeVarint(encoder, (int) file.getUncoveredLines());
+            LineSet.of(file.getCoveredLineNumbers(), file.getCoveredLineCount()).write(encoder);
+            LineSet.of(file.getUncoveredLineNumbers(), file.getUncoveredLineCount()).write(encoder);
+            records.add(new Record(file.getName(), encoder.toByteArray()));
+        }
+
+        /**
+         * Adds the files of the next report, E.G. of the reports parsed in parallel. A class the other builder also
+         * received keeps its coverage, as the last report that lists a class wins.
+         */
+        public void addAll(Builder other) {
+            Set<String> names = new HashSet<String>();
+            for (Record record : other.records) {
+                names.add(record.name);
+            }
+            List<Record> kept = new ArrayList<Record>(records.size());
+            for (Record record : records) {
+                if (!names.contains(record.name)) {
+                    kept.add(record);
+                }
+            }
+            records.clear();
+            records.addAll(kept);
+            records.addAll(other.records);
+        }
+
+        public boolean isEmpty() {
+            return records.isEmpty();
+        }
+
+        /**
+         * Gets the archive of the files received
+         *
+         * @return the archive bytes
+         */
+        public byte[] build() {
+            List<Record> sorted = new ArrayList<Record>(records);
+            Collections.sort(sorted, RECORD_ORDER);
+            int blocks = (sorted.size() + BLOCK_CLASSES - 1) / BLOCK_CLASSES;
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater();
+            try {
+                byte[] chunk = new byte[8192];
+                for (int first = 0; first < sorted.size(); first += BLOCK_CLASSES) {
+                    block.reset();
+                    String previous = "";
+                    for (int i = first; i < Math.min(first + BLOCK_CLASSES, sorted.size()); i++) {
+                        Record record = sorted.get(i);
+                        int shared = sharedPrefix(previous, record.name);
+                        writeVarint(block, shared);
+                        writeString(block, record.name.substring(shared));
+                        block.write(record.lines, 0, record.lines.length);
+                        previous = record.name;
+                    }
+                    long position = output.size();
+                    deflater.reset();
+                    deflater.setInput(block.toByteArray());
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        output.write(chunk, 0, deflater.deflate(chunk));
+                    }
+                    writeString(index, sorted.get(first).name);
+                    ByteBuffer entry = ByteBuffer.allocate(16);
+                    entry.putLong(position).putInt((int) (output.size() - position)).putInt(block.size());
+                    index.write(entry.array(), 0, entry.capacity());
+                }
+            } finally {
+                deflater.end();
+            }
+
+            long indexPosition = output.size();
+            output.write(index.toByteArray(), 0, index.size());
+            byte[] bytes = output.toByteArray();
+            ByteBuffer.wrap(bytes).putInt(MAGIC).putInt(VERSION).putInt(sorted.size()).putInt(blocks).putLong(indexPosition);
+            return bytes;
+        }
+
+        private static int sharedPrefix(String first, String second) {
+            int length = Math.min(first.length(), second.length());
+            int shared = 0;
+            while (shared < length && first.charAt(shared) == second.charAt(shared)) {
+                shared++;
+            }
+            if (shared > 0 && Character.isHighSurrogate(second.charAt(shared - 1))) {
+                shared--;
+            }
+            return shared;
+        }
+    }
+
+    private static final class Record {
+
+        private final String name;
+        private final byte[] lines;
+
+        Record(String name, byte[] lines) {
+            this.name = name;
+            this.lines = lines;
+        }
+    }
+
+    private static final Comparator<Record> RECORD_ORDER = new Comparator<Record>() {
+        public int compare(Record first, Record second) {
+            return first.name.compareTo(second.name);
+        }
+    };
+}
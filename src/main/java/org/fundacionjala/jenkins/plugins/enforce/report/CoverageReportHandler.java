@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+/**
+ * Receives the files of a coverage report while it is parsed.
+ */
+public interface CoverageReportHandler {
+
+    /**
+     * Called once per file of the report
+     *
+     * @param file the coverage of the file, it is only valid during the call
+     */
+    void onFile(FileCoverage file);
+}
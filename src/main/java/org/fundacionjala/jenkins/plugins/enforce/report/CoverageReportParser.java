@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.fundacionjala.jenkins.plugins.enforce.Constants;
+import org.fundacionjala.jenkins.plugins.enforce.CoverageBands;
+import org.fundacionjala.jenkins.plugins.enforce.CoverageSummary;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.logging.Logger;
+
+/**
+ * Parses an EnForce coverage report as a stream, so the memory used does not depend on the report size.
+ * <p>
+ * It supports the two arrays schema generated by EnForce:
+ * <pre>
+ * {"title": "...", "coverageData": [["Lines", "Number"], ["Covered", 10], ["Not Covered", 2]],
+ *  "data": [["Lines", "Number"], ["Danger (0% - 74%)", 1], ["Risk (75% - 79%)", 0], ...]}
+ * </pre>
+ * and the per file schema:
+ * <pre>
+ * {"files": [{"name": "AccountService", "coveredLines": [1, 2, 3], "uncoveredLines": [7]}, ...]}
+ * </pre>
+ * where a file can also give its amount of lines as "covered" and "uncovered" numbers and the names of the tests that
+ * cover it as a "tests" array.
+ * When a report has both, the totals of the two arrays schema are used, and so are its file counts unless the
+ * files are classified with other than the default bands. The file counts of a report without per file data were
+ * classified with the default bands, so its summary keeps them even when other bands are given. A parser instance
+ * reads one report.
+ */
+public class CoverageReportParser {
+
+    private static final Logger LOGGER = Logger.getLogger(CoverageReportParser.class.getName());
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CoverageReportHandler handler;
+    private final CoverageBands bands;
+    private final FileCoverage file = new FileCoverage();
+    private String title = "";
+
+    private long coveredLines;
+    private long uncoveredLines;
+    private boolean coverageDataFound;
+    private final int[] fileCounts = new int[Constants.COVERAGE_STATUS_NAMES.length];
+    private boolean dataFound;
+
+    private long filesCoveredLines;
+    private long filesUncoveredLines;
+    private final int[] filesFileCounts = new int[Constants.COVERAGE_STATUS_NAMES.length];
+    private boolean filesFound;
+
+    public CoverageReportParser() {
+        this(null);
+    }
+
+    /**
+     * Creates a parser that reports every file to a handler
+     *
+     * @param handler receives the files of the report, it can be null
+     */
+    public CoverageReportParser(CoverageReportHandler handler) {
+        this(handler, CoverageBands.DEFAULT);
+    }
+
+    /**
+     * Creates a parser that reports every file to a handler and classifies the files with the given bands
+     *
+     * @param handler receives the files of the report, it can be null
+     * @param bands   the coverage bands of the summary
+     */
+    public CoverageReportParser(CoverageReportHandler handler, CoverageBands bands) {
+        this.handler = handler;
+        this.bands = bands;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Parses a report file
+     *
+     * @param report the JSON file
+     * @return the coverage of the report or null if it does not have coverage data
+     */
+    public CoverageSummary parse(File report) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(report), UTF_8));
+        try {
+            return parse(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parses a report, the reader is not closed
+     *
+     * @param reader the JSON content
+     * @return the coverage of the report or null if it does not have coverage data
+     */
+    public CoverageSummary parse(Reader reader) throws IOException {
+        try {
+            return read(new JsonReader(reader));
+        } catch (IllegalStateException exception) {
+            throw new IOException("Invalid coverage report: " + exception.getMessage(), exception);
+        } catch (NumberFormatException exception) {
+            throw new IOException("Invalid coverage report: " + exception.getMessage(), exception);
+        }
+    }
+
+    private CoverageSummary read(JsonReader json) throws IOException {
+        json.setLenient(true);
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("title".equals(name) && json.peek() == JsonToken.STRING) {
+                title = json.nextString();
+            } else if ("coverageData".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                readCoverageData(json);
+            } else if ("data".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                readData(json);
+            } else if ("files".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                readFiles(json);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return getSummary();
+    }
+
+    private CoverageSummary getSummary() {
+        if (!coverageDataFound && !filesFound) {
+            return null;
+        }
+        long covered = coverageDataFound ? coveredLines : filesCoveredLines;
+        long uncovered = coverageDataFound ? uncoveredLines : filesUncoveredLines;
+        if (filesFound) {
+            boolean useData = dataFound && CoverageBands.DEFAULT.equals(bands);
+            return new CoverageSummary(covered, uncovered, useData ? fileCounts : filesFileCounts, bands, title);
+        }
+        if (!CoverageBands.DEFAULT.equals(bands)) {
+            LOGGER.warning("The coverage bands " + bands + " cannot be applied to a coverage report without per file "
+                    + "data, its file counts keep the default bands");
+        }
+        return new CoverageSummary(covered, uncovered, fileCounts, CoverageBands.DEFAULT, title);
+    }
+
+    private void readCoverageData(JsonReader json) throws IOException {
+        json.beginArray();
+        for (int row = 0; json.hasNext(); row++) {
+            long value = readRowValue(json);
+            if (row == 1) {
+                coveredLines = value;
+            } else if (row == 2) {
+                uncoveredLines = value;
+                coverageDataFound = true;
+            }
+        }
+        json.endArray();
+    }
+
+    private void readData(JsonReader json) throws IOException {
+        json.beginArray();
+        for (int row = 0; json.hasNext(); row++) {
+            long value = readRowValue(json);
+            if (row > 0 && row <= fileCounts.length) {
+                fileCounts[row - 1] = (int) value;
+                dataFound = row == fileCounts.length;
+            }
+        }
+        json.endArray();
+    }
+
+    /**
+     * Reads a [label, value] row and gets its value, it is zero when the value is not a number
+     */
+    private long readRowValue(JsonReader json) throws IOException {
+        long value = 0;
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            json.skipValue();
+            return value;
+        }
+        json.beginArray();
+        for (int column = 0; json.hasNext(); column++) {
+            if (column == 1 && json.peek() == JsonToken.NUMBER) {
+                value = Math.round(json.nextDouble());
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endArray();
+        return value;
+    }
+
+    private void readFiles(JsonReader json) throws IOException {
+        filesFound = true;
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            file.reset();
+            readFile(json);
+            filesCoveredLines += file.getCoveredLines();
+            filesUncoveredLines += file.getUncoveredLines();
+            if (file.getCoveredLines() + file.getUncoveredLines() > 0) {
+                filesFileCounts[bands.getBand(file.getPercentage())]++;
+            }
+            if (null != handler) {
+                handler.onFile(file);
+            }
+        }
+        json.endArray();
+    }
+
+    private void readFile(JsonReader json) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            JsonToken token = json.peek();
+            if ("name".equals(name) && token == JsonToken.STRING) {
+                file.setName(json.nextString());
+            } else if ("covered".equals(name) && token == JsonToken.NUMBER) {
+                file.setCoveredLines(json.nextLong());
+            } else if ("uncovered".equals(name) && token == JsonToken.NUMBER) {
+                file.setUncoveredLines(json.nextLong());
+            } else if ("coveredLines".equals(name) && token == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    file.addCoveredLineNumber(json.nextInt());
+                }
+                json.endArray();
+            } else if ("uncoveredLines".equals(name) && token == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    file.addUncoveredLineNumber(json.nextInt());
+                }
+                json.endArray();
+            } else if ("tests".equals(name) && token == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    if (json.peek() == JsonToken.STRING) {
+                        file.addTest(json.nextString());
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import java.util.Arrays;
+
+/**
+ * Represents the coverage of one file of the report while it is parsed.
+ * The parser reuses the same instance for every file, so handlers must copy the values they keep.
+ */
+public final class FileCoverage {
+
+    private String name;
+    private long coveredLines;
+    private long uncoveredLines;
+    private int[] coveredLineNumbers = new int[64];
+    private int coveredLineCount;
+    private int[] uncoveredLineNumbers = new int[64];
+    private int uncoveredLineCount;
+    private String[] tests = new String[16];
+    private int testCount;
+
+    void reset() {
+        name = null;
+        coveredLines = -1;
+        uncoveredLines = -1;
+        coveredLineCount = 0;
+        uncoveredLineCount = 0;
+        testCount = 0;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    void setCoveredLines(long coveredLines) {
+        this.coveredLines = coveredLines;
+    }
+
+    void setUncoveredLines(long uncoveredLines) {
+        this.uncoveredLines = uncoveredLines;
+    }
+
+    void addCoveredLineNumber(int line) {
+        if (coveredLineCount == coveredLineNumbers.length) {
+            coveredLineNumbers = Arrays.copyOf(coveredLineNumbers, coveredLineCount * 2);
+        }
+        coveredLineNumbers[coveredLineCount++] = line;
+    }
+
+    void addUncoveredLineNumber(int line) {
+        if (uncoveredLineCount == uncoveredLineNumbers.length) {
+            uncoveredLineNumbers = Arrays.copyOf(uncoveredLineNumbers, uncoveredLineCount * 2);
+        }
+        uncoveredLineNumbers[uncoveredLineCount++] = line;
+    }
+
+    void addTest(String test) {
+        if (testCount == tests.length) {
+            tests = Arrays.copyOf(tests, testCount * 2);
+        }
+        tests[testCount++] = test;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the amount of covered lines, it is the size of the covered line numbers when the report does not give it
+     */
+    public long getCoveredLines() {
+        return coveredLines >= 0 ? coveredLines : coveredLineCount;
+    }
+
+    /**
+     * Gets the amount of uncovered lines, it is the size of the uncovered line numbers when the report does not give it
+     */
+    public long getUncoveredLines() {
+        return uncoveredLines >= 0 ? uncoveredLines : uncoveredLineCount;
+    }
+
+    /**
+     * Gets coverage percentage of the file
+     */
+    public double getPercentage() {
+        long totalLines = getCoveredLines() + getUncoveredLines();
+        return totalLines != 0 ? getCoveredLines() * 100.0 / totalLines : 0;
+    }
+
+    /**
+     * Gets the buffer of covered line numbers, only the first {@link #getCoveredLineCount()} values are valid
+     */
+    public int[] getCoveredLineNumbers() {
+        return coveredLineNumbers;
+    }
+
+    public int getCoveredLineCount() {
+        return coveredLineCount;
+    }
+
+    /**
+     * Gets the buffer of uncovered line numbers, only the first {@link #getUncoveredLineCount()} values are valid
+     */
+    public int[] getUncoveredLineNumbers() {
+        return uncoveredLineNumbers;
+    }
+
+    public int getUncoveredLineCount() {
+        return uncoveredLineCount;
+    }
+
+    /**
+     * Gets the buffer of the names of the tests that cover the file, only the first {@link #getTestCount()} values
+     * are valid
+     */
+    public String[] getTests() {
+        return tests;
+    }
+
+    public int getTestCount() {
+        return testCount;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Represents a set of line numbers as runs of consecutive lines, a run-length encoded bitset. Covered and uncovered
+ * lines come in blocks, so a class usually needs a few runs instead of one number per line. A run is stored as the
+ * gap from the end of the previous run and its length, both as variable length integers.
+ */
+public final class LineSet {
+
+    private final int[] starts;
+    private final int[] ends;
+
+    private LineSet(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Creates the set of the first line numbers of a buffer, in any order and with repeated numbers
+     *
+     * @param buffer the line numbers
+     * @param count  the amount of valid values in the buffer
+     * @return the set
+     */
+    public static LineSet of(int[] buffer, int count) {
+        int[] lines = Arrays.copyOf(buffer, count);
+        Arrays.sort(lines);
+        int runs = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (i == 0 || lines[i] > lines[i - 1] + 1) {
+                runs++;
+            }
+        }
+        int[] starts = new int[runs];
+        int[] ends = new int[runs];
+        int run = -1;
+        for (int i = 0; i < lines.length; i++) {
+            if (i == 0 || lines[i] > lines[i - 1] + 1) {
+                starts[++run] = lines[i];
+            }
+            ends[run] = lines[i];
+        }
+        return new LineSet(starts, ends);
+    }
+
+    /**
+     * Verifies if the set has a line, it is a binary search on the runs
+     */
+    public boolean contains(int line) {
+        int run = Arrays.binarySearch(starts, line);
+        if (run >= 0) {
+            return true;
+        }
+        run = -run - 2;
+        return run >= 0 && line <= ends[run];
+    }
+
+    /**
+     * Gets the amount of lines
+     */
+    public int size() {
+        int size = 0;
+        for (int run = 0; run < starts.length; run++) {
+            size += ends[run] - starts[run] + 1;
+        }
+        return size;
+    }
+
+    public int getRunCount() {
+        return starts.length;
+    }
+
+    public int getRunStart(int run) {
+        return starts[run];
+    }
+
+    /**
+     * Gets the last line of a run, inclusive
+     */
+    public int getRunEnd(int run) {
+        return ends[run];
+    }
+
+    /**
+     * Gets the greatest line number or 0 if the set is empty
+     */
+    public int getLastLine() {
+        return ends.length == 0 ? 0 : ends[ends.length - 1];
+    }
+
+    /**
+     * Gets the line numbers, ascending
+     */
+    public int[] toArray() {
+        int[] lines = new int[size()];
+        int i = 0;
+        for (int run = 0; run < starts.length; run++) {
+            for (int line = starts[run]; line <= ends[run]; line++) {
+                lines[i++] = line;
+            }
+        }
+        return lines;
+    }
+
+    void write(ByteArrayOutputStream output) {
+        CoverageArchive.writeVarint(output, starts.length);
+        int previous = 0;
+        for (int run = 0; run < starts.length; run++) {
+            CoverageArchive.writeVarint(output, starts[run] - previous);
+            CoverageArchive.writeVarint(output, ends[run] - starts[run]);
+            previous = ends[run];
+        }
+    }
+
+    static LineSet read(ByteBuffer input) {
+        int runs = CoverageArchive.readVarint(input);
+        int[] starts = new int[runs];
+        int[] ends = new int[runs];
+        int previous = 0;
+        for (int run = 0; run < runs; run++) {
+            starts[run] = previous + CoverageArchive.readVarint(input);
+            ends[run] = starts[run] + CoverageArchive.readVarint(input);
+            previous = ends[run];
+        }
+        return new LineSet(starts, ends);
+    }
+
+    static void skip(ByteBuffer input) {
+        for (int values = 2 * CoverageArchive.readVarint(input); values > 0; values--) {
+            CoverageArchive.readVarint(input);
+        }
+    }
+}
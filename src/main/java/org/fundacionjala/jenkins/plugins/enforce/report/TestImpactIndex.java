@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Maps every class of a report to the tests that cover it, from the "tests" array of its files. The classes and the
+ * tests are sorted without case, as Apex names are, and the tests of a class are a range of test ids, so selecting
+ * the tests of a set of changed classes is a binary search per class and a union of their ranges.
+ */
+public final class TestImpactIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x454E5449;
+    private static final int VERSION = 1;
+
+    private final String[] tests;
+    private final String[] classes;
+    private final int[] offsets;
+    private final int[] testIds;
+
+    private TestImpactIndex(String[] tests, String[] classes, int[] offsets, int[] testIds) {
+        this.tests = tests;
+        this.classes = classes;
+        this.offsets = offsets;
+        this.testIds = testIds;
+    }
+
+    /**
+     * Gets the amount of classes covered by at least one test
+     */
+    public int getClassCount() {
+        return classes.length;
+    }
+
+    public int getTestCount() {
+        return tests.length;
+    }
+
+    /**
+     * Gets the tests that cover a class
+     *
+     * @param className the class name, in any case
+     * @return the test names, sorted, or null if no test covers the class
+     */
+    public List<String> getTests(String className) {
+        int index = Arrays.binarySearch(classes, className, String.CASE_INSENSITIVE_ORDER);
+        if (index < 0) {
+            return null;
+        }
+        List<String> result = new ArrayList<String>(offsets[index + 1] - offsets[index]);
+        for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+            result.add(tests[testIds[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Selects the tests that cover any of the changed classes, the smallest set of tests that runs every changed
+     * class that has coverage. A changed test class also selects its own tests.
+     *
+     * @param changedClasses the class names, in any case
+     * @return the selected tests and the classes that no test covers
+     */
+    public Selection select(Collection<String> changedClasses) {
+        BitSet selected = new BitSet(tests.length);
+        Set<String> unknownClasses = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        for (String className : changedClasses) {
+            boolean known = selectTestsOf(className, selected);
+            int index = Arrays.binarySearch(classes, className, String.CASE_INSENSITIVE_ORDER);
+            if (index >= 0) {
+                for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+                    selected.set(testIds[i]);
+                }
+            } else if (!known) {
+                unknownClasses.add(className);
+            }
+        }
+        List<String> selectedTests = new ArrayList<String>(selected.cardinality());
+        for (int id = selected.nextSetBit(0); id >= 0; id = selected.nextSetBit(id + 1)) {
+            selectedTests.add(tests[id]);
+        }
+        return new Selection(selectedTests, new ArrayList<String>(unknownClasses));
+    }
+
+    /**
+     * Selects the tests of a changed test class, they are named as the class or start with the class name and a dot
+     *
+     * @return true if the class has tests
+     */
+    private boolean selectTestsOf(String className, BitSet selected) {
+        int id = Arrays.binarySearch(tests, className, String.CASE_INSENSITIVE_ORDER);
+        boolean found = id >= 0;
+        if (found) {
+            selected.set(id++);
+        } else {
+            id = -id - 1;
+        }
+        String prefix = className + ".";
+        for (; id < tests.length && tests[id].regionMatches(true, 0, prefix, 0, prefix.length()); id++) {
+            selected.set(id);
+            found = true;
+        }
+        return found;
+    }
+
+    /**
+     * Splits a list of class names separated by commas, semicolons or white space
+     */
+    public static List<String> splitClassNames(String classNames) {
+        List<String> names = new ArrayList<String>();
+        if (null != classNames) {
+            for (String name : classNames.split("[\\s,;]+")) {
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Merges the indexes of several reports, a class covered in more than one report gets the tests of all of them
+     *
+     * @param indexes the indexes of the reports
+     * @return the merged index or null if there are no indexes
+     */
+    public static TestImpactIndex merge(List<TestImpactIndex> indexes) {
+        if (indexes.size() <= 1) {
+            return indexes.isEmpty() ? null : indexes.get(0);
+        }
+        Builder builder = new Builder();
+        for (TestImpactIndex index : indexes) {
+            for (int c = 0; c < index.classes.length; c++) {
+                for (int i = index.offsets[c]; i < index.offsets[c + 1]; i++) {
+                    builder.add(index.classes[c], index.tests[index.testIds[i]]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Saves the index as the test names and then every class with its test ids
+     *
+     * @param file the index file
+     */
+    public void save(File file) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(tests.length);
+            for (String test : tests) {
+                output.writeUTF(test);
+            }
+            output.writeInt(classes.length);
+            for (int c = 0; c < classes.length; c++) {
+                output.writeUTF(classes[c]);
+                output.writeInt(offsets[c + 1] - offsets[c]);
+                for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+                    output.writeInt(testIds[i]);
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Loads an index saved by {@link #save(File)}
+     *
+     * @param file the index file
+     * @return the index
+     */
+    public static TestImpactIndex load(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a test impact index");
+            }
+            String[] tests = new String[input.readInt()];
+            for (int i = 0; i < tests.length; i++) {
+                tests[i] = input.readUTF();
+            }
+            String[] classes = new String[input.readInt()];
+            int[] offsets = new int[classes.length + 1];
+            int[] testIds = new int[Math.max(16, tests.length)];
+            for (int c = 0; c < classes.length; c++) {
+                classes[c] = input.readUTF();
+                int count = input.readInt();
+                offsets[c + 1] = offsets[c] + count;
+                if (offsets[c + 1] > testIds.length) {
+                    testIds = Arrays.copyOf(testIds, Math.max(offsets[c + 1], 2 * testIds.length));
+                }
+                for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+                    testIds[i] = input.readInt();
+                }
+            }
+            return new TestImpactIndex(tests, classes, offsets, Arrays.copyOf(testIds, offsets[classes.length]));
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Represents the tests selected for a set of changed classes
+     */
+    public static final class Selection {
+
+        private final List<String> tests;
+        private final List<String> unknownClasses;
+
+        Selection(List<String> tests, List<String> unknownClasses) {
+            this.tests = tests;
+            this.unknownClasses = unknownClasses;
+        }
+
+        /**
+         * Gets the selected tests, sorted
+         */
+        public List<String> getTests() {
+            return tests;
+        }
+
+        /**
+         * Gets the changed classes that no test of the report covers, E.G. new classes
+         */
+        public List<String> getUnknownClasses() {
+            return unknownClasses;
+        }
+    }
+
+    /**
+     * Builds an index from the files of a report while it is parsed, the files without tests are ignored
+     */
+    public static final class Builder implements CoverageReportHandler {
+
+        private final Map<String, Set<String>> testsByClass = new HashMap<String, Set<String>>();
+
+        public void onFile(FileCoverage file) {
+            if (null == file.getName()) {
+                return;
+            }
+            for (int i = 0; i < file.getTestCount(); i++) {
+                add(file.getName(), file.getTests()[i]);
+            }
+        }
+
+        private void add(String className, String test) {
+            Set<String> classTests = testsByClass.get(className);
+            if (null == classTests) {
+                classTests = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+                testsByClass.put(className, classTests);
+            }
+            classTests.add(test);
+        }
+
+        /**
+         * Adds the classes and tests of the builder of another report
+         */
+        public void addAll(Builder other) {
+            for (Map.Entry<String, Set<String>> entry : other.testsByClass.entrySet()) {
+                for (String test : entry.getValue()) {
+                    add(entry.getKey(), test);
+                }
+            }
+        }
+
+        /**
+         * Gets the index of the files received
+         *
+         * @return the index or null if no file had tests
+         */
+        public TestImpactIndex build() {
+            if (testsByClass.isEmpty()) {
+                return null;
+            }
+            TreeMap<String, Set<String>> sortedClasses = new TreeMap<String, Set<String>>(String.CASE_INSENSITIVE_ORDER);
+            Set<String> sortedTests = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+            for (Map.Entry<String, Set<String>> entry : testsByClass.entrySet()) {
+                Set<String> classTests = sortedClasses.get(entry.getKey());
+                if (null == classTests) {
+                    classTests = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+                    sortedClasses.put(entry.getKey(), classTests);
+                }
+                classTests.addAll(entry.getValue());
+                sortedTests.addAll(entry.getValue());
+            }
+            String[] tests = sortedTests.toArray(new String[sortedTests.size()]);
+            Map<String, Integer> ids = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+            for (int id = 0; id < tests.length; id++) {
+                ids.put(tests[id], id);
+            }
+            String[] classes = new String[sortedClasses.size()];
+            int[] offsets = new int[classes.length + 1];
+            int count = 0;
+            for (Set<String> classTests : sortedClasses.values()) {
+                count += classTests.size();
+            }
+            int[] testIds = new int[count];
+            int c = 0;
+            for (Map.Entry<String, Set<String>> entry : sortedClasses.entrySet()) {
+                classes[c] = entry.getKey();
+                offsets[c + 1] = offsets[c];
+                for (String test : entry.getValue()) {
+                    testIds[offsets[c + 1]++] = ids.get(test);
+                }
+                c++;
+            }
+            return new TestImpactIndex(tests, classes, offsets, testIds);
+        }
+    }
+}
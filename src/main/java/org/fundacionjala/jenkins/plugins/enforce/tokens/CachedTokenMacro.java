@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+import org.fundacionjala.jenkins.plugins.enforce.metrics.EnforceMetrics;
+import org.jenkinsci.plugins.tokenmacro.DataBoundTokenMacro;
+import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
+
+import java.io.IOException;
+
+/**
+ * Base of the ENFORCE_* macros, it renders a macro once per build and state and keeps the value in the build.
+ */
+public abstract class CachedTokenMacro extends DataBoundTokenMacro {
+
+    @Override
+    public String evaluate(AbstractBuild<?, ?> build, TaskListener listener, String macroName) throws MacroEvaluationException, IOException, InterruptedException {
+        String key = getCacheKey(build, macroName);
+        if (null == key) {
+            return timedRender(build, listener);
+        }
+        EnforceMacroCache cache = EnforceMacroCache.of(build);
+        String value = cache.get(key);
+        if (null == value) {
+            EnforceMetrics.counter(EnforceMetrics.MACRO_CACHE_MISSES).inc();
+            value = cache.put(key, timedRender(build, listener));
+        } else {
+            EnforceMetrics.counter(EnforceMetrics.MACRO_CACHE_HITS).inc();
+        }
+        return value;
+    }
+
+    private String timedRender(AbstractBuild<?, ?> build, TaskListener listener) throws MacroEvaluationException, IOException, InterruptedException {
+        long start = System.nanoTime();
+        String value = render(build, listener);
+        EnforceMetrics.timer(EnforceMetrics.MACRO_RENDER).updateSince(start);
+        EnforceMetrics.counter(EnforceMetrics.MACRO_OUTPUT_LENGTH).add(value.length());
+        return value;
+    }
+
+    /**
+     * Gets the key of the rendered value, it must change when the data the macro renders changes
+     *
+     * @param build     the build that expands the macro
+     * @param macroName the macro name
+     * @return the key or null if the value must not be cached
+     */
+    protected abstract String getCacheKey(AbstractBuild<?, ?> build, String macroName);
+
+    /**
+     * Renders the macro value
+     *
+     * @param build    the build that expands the macro
+     * @param listener It receives events that happen during a build.
+     * @return the macro value
+     */
+    protected abstract String render(AbstractBuild<?, ?> build, TaskListener listener) throws MacroEvaluationException, IOException, InterruptedException;
+}
@@ -4,9 +4,8 @@ import hudson.Extension;
 import hudson.model.AbstractBuild;
 import hudson.model.TaskListener;
 import org.fundacionjala.jenkins.plugins.enforce.Constants;
-import org.fundacionjala.jenkins.plugins.enforce.EnforcePublisher;
+import org.fundacionjala.jenkins.plugins.enforce.EnforceBuildAction;
 import org.fundacionjala.jenkins.plugins.enforce.PieChartData;
-import org.jenkinsci.plugins.tokenmacro.DataBoundTokenMacro;
 import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
 
 import java.io.IOException;
@@ -16,15 +15,20 @@ import java.io.IOException;
  * @autor Navor Nuñez
  */
 @Extension
-public class EnforceCoverageStatusTokenMacro extends DataBoundTokenMacro {
+public class EnforceCoverageStatusTokenMacro extends CachedTokenMacro {
 
     @Override
-    public String evaluate(AbstractBuild<?, ?> build, TaskListener listener, String macroName) throws MacroEvaluationException, IOException, InterruptedException {
-        EnforcePublisher enforcePublisher = (EnforcePublisher) build.getProject().getPublishersList().get(EnforcePublisher.DESCRIPTOR);
-        PieChartData pieChartData = enforcePublisher.getPieChartData(build, listener);
-        if (null == pieChartData) {
+    protected String getCacheKey(AbstractBuild<?, ?> build, String macroName) {
+        return null == build.getAction(EnforceBuildAction.class) ? null : getClass().getName();
+    }
+
+    @Override
+    protected String render(AbstractBuild<?, ?> build, TaskListener listener) throws MacroEvaluationException, IOException, InterruptedException {
+        EnforceBuildAction action = build.getAction(EnforceBuildAction.class);
+        if (null == action) {
             return "";
         }
+        PieChartData pieChartData = action.getPieChartData();
         StringBuilder coverageStatus = new StringBuilder();
         if (pieChartData.dataExists()) {
             coverageStatus.append("Coverage Status: ");
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import hudson.Extension;
+import org.fundacionjala.jenkins.plugins.enforce.Constants;
+import org.fundacionjala.jenkins.plugins.enforce.TestHistory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Provides the ENFORCE_FLAKY_TESTS macro with the tests that passed and failed in the newest builds.
+ */
+@Extension
+public class EnforceFlakyTestsTokenMacro extends TestHistoryTokenMacro {
+
+    @Override
+    protected List<TestHistory.TestStats> getTests(TestHistory history, int count, int builds) throws IOException {
+        return history.getFlaky(count, builds);
+    }
+
+    @Override
+    protected String getTitle() {
+        return "Flaky tests of the last " + builds + " builds:";
+    }
+
+    @Override
+    protected void appendStats(StringBuilder value, TestHistory.TestStats test) {
+        value.append(test.getFailures()).append(" failures in ").append(test.getRuns()).append(" runs, ")
+                .append(test.getFlips()).append(" changes of result");
+    }
+
+    @Override
+    public boolean acceptsMacroName(String macroName) {
+        return Constants.ENFORCE_FLAKY_TESTS.equalsIgnoreCase(macroName);
+    }
+}
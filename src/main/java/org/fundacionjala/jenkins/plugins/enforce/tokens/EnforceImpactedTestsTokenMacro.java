@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.scm.ChangeLogSet;
+import org.fundacionjala.jenkins.plugins.enforce.Constants;
+import org.fundacionjala.jenkins.plugins.enforce.BuildCoverageStore;
+import org.fundacionjala.jenkins.plugins.enforce.report.TestImpactIndex;
+import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides the ENFORCE_IMPACTED_TESTS macro with the tests that cover the changed classes, read from the test impact
+ * index of the newest build that has one. The changed classes are the given ones or, by default, the Apex classes
+ * and triggers of the changes of the build. When the tests cannot be selected safely, because there is no index, no
+ * changed class, a changed class that no test covers or no test at all, the macro renders its fallback value so the
+ * whole suite is run.
+ */
+@Extension
+public class EnforceImpactedTestsTokenMacro extends CachedTokenMacro {
+
+    private static final String[] APEX_EXTENSIONS = {".cls", ".trigger"};
+
+    /**
+     * Changed class names separated by commas, the changes of the build are used when it is empty
+     */
+    @Parameter
+    public String classes = "";
+
+    /**
+     * Separator of the rendered test names
+     */
+    @Parameter
+    public String separator = ",";
+
+    /**
+     * Value rendered when the tests cannot be selected and the whole suite has to run
+     */
+    @Parameter
+    public String fallback = Constants.IMPACTED_TESTS_FALLBACK;
+
+    @Override
+    protected String getCacheKey(AbstractBuild<?, ?> build, String macroName) {
+        Run<?, ?> source = BuildCoverageStore.findTestImpactBuild(build);
+        if (null == source) {
+            return null;
+        }
+        return new StringBuilder(getClass().getName()).append(':').append(source.getExternalizableId())
+                .append(':').append(classes).append('/').append(separator).append('/').append(fallback).toString();
+    }
+
+    @Override
+    protected String render(AbstractBuild<?, ?> build, TaskListener listener) throws MacroEvaluationException, IOException, InterruptedException {
+        Run<?, ?> source = BuildCoverageStore.findTestImpactBuild(build);
+        List<String> changedClasses = TestImpactIndex.splitClassNames(classes);
+        if (changedClasses.isEmpty()) {
+            changedClasses = getChangedClasses(build);
+        }
+        TestImpactIndex testImpact = null == source ? null : BuildCoverageStore.of(source).getTestImpact();
+        return render(testImpact, changedClasses, separator, fallback);
+    }
+
+    /**
+     * Renders the tests that cover the changed classes
+     *
+     * @param testImpact     the test impact index, it can be null
+     * @param changedClasses the changed class names
+     * @param separator      the separator of the test names
+     * @param fallback       the value rendered when the tests cannot be selected
+     * @return the selected tests or the fallback when there is no index, no changed class, a changed class no test
+     * covers or no selected test
+     */
+    static String render(TestImpactIndex testImpact, List<String> changedClasses, String separator, String fallback) {
+        if (null == testImpact || changedClasses.isEmpty()) {
+            return fallback;
+        }
+        TestImpactIndex.Selection selection = testImpact.select(changedClasses);
+        if (!selection.getUnknownClasses().isEmpty() || selection.getTests().isEmpty()) {
+            return fallback;
+        }
+        StringBuilder value = new StringBuilder();
+        for (String test : selection.getTests()) {
+            if (value.length() > 0) {
+                value.append(separator);
+            }
+            value.append(test);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Gets the names of the Apex classes and triggers changed by the build
+     */
+    static List<String> getChangedClasses(AbstractBuild<?, ?> build) {
+        List<String> changedClasses = new ArrayList<String>();
+        ChangeLogSet<? extends ChangeLogSet.Entry> changeSet = build.getChangeSet();
+        if (null == changeSet) {
+            return changedClasses;
+        }
+        for (ChangeLogSet.Entry entry : changeSet) {
+            for (String path : entry.getAffectedPaths()) {
+                String name = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+                for (String extension : APEX_EXTENSIONS) {
+                    if (name.regionMatches(true, name.length() - extension.length(), extension, 0, extension.length())) {
+                        changedClasses.add(name.substring(0, name.length() - extension.length()));
+                    }
+                }
+            }
+        }
+        return changedClasses;
+    }
+
+    @Override
+    public boolean acceptsMacroName(String macroName) {
+        return Constants.ENFORCE_IMPACTED_TESTS.equalsIgnoreCase(macroName);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import hudson.model.Run;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the rendered values of the ENFORCE_* macros of a build, so a template that expands them many times
+ * renders each of them once. The caches are kept in memory by build, weakly, so they are never saved in build.xml
+ * and they go away with the builds Jenkins unloads.
+ */
+public final class EnforceMacroCache {
+
+    private static final Map<Object, EnforceMacroCache> CACHES = new WeakHashMap<Object, EnforceMacroCache>();
+
+    private final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+
+    private EnforceMacroCache() {
+    }
+
+    /**
+     * Gets the macro cache of a build, it is created the first time it is requested
+     *
+     * @param run the build that expands the macros
+     * @return the cache of the build
+     */
+    public static EnforceMacroCache of(Run<?, ?> run) {
+        return get(run);
+    }
+
+    /**
+     * Drops the cached values of a build, it is called when the build publishes its coverage again
+     *
+     * @param run the build that changed
+     */
+    public static void invalidate(Run<?, ?> run) {
+        remove(run);
+    }
+
+    static EnforceMacroCache get(Object owner) {
+        synchronized (CACHES) {
+            EnforceMacroCache cache = CACHES.get(owner);
+            if (null == cache) {
+                cache = new EnforceMacroCache();
+                CACHES.put(owner, cache);
+            }
+            return cache;
+        }
+    }
+
+    static void remove(Object owner) {
+        synchronized (CACHES) {
+            CACHES.remove(owner);
+        }
+    }
+
+    /**
+     * Gets a rendered value
+     *
+     * @param key the macro name and the state of the build it was rendered from
+     * @return the value or null if it was not rendered yet
+     */
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Keeps a rendered value
+     *
+     * @param key   the macro name and the state of the build it was rendered from
+     * @param value the rendered value
+     * @return the value that is kept, it is the first one when two threads render the same macro
+     */
+    public String put(String key, String value) {
+        String previous = values.putIfAbsent(key, value);
+        return null == previous ? value : previous;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import hudson.Extension;
+import org.fundacionjala.jenkins.plugins.enforce.Constants;
+import org.fundacionjala.jenkins.plugins.enforce.TestHistory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Provides the ENFORCE_SLOWEST_TESTS macro with the tests of the greatest average duration in the newest builds.
+ */
+@Extension
+public class EnforceSlowestTestsTokenMacro extends TestHistoryTokenMacro {
+
+    @Override
+    protected List<TestHistory.TestStats> getTests(TestHistory history, int count, int builds) throws IOException {
+        return history.getSlowest(count, builds);
+    }
+
+    @Override
+    protected String getTitle() {
+        return "Slowest tests of the last " + builds + " builds:";
+    }
+
+    @Override
+    protected void appendStats(StringBuilder value, TestHistory.TestStats test) {
+        value.append(formatSeconds(test.getAverageDuration())).append(" average, ")
+                .append(formatSeconds(test.getMaxDuration())).append(" maximum in ")
+                .append(test.getRuns()).append(" runs");
+    }
+
+    @Override
+    public boolean acceptsMacroName(String macroName) {
+        return Constants.ENFORCE_SLOWEST_TESTS.equalsIgnoreCase(macroName);
+    }
+}
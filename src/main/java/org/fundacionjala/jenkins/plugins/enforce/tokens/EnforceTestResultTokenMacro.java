@@ -6,47 +6,99 @@ import hudson.model.TaskListener;
 import hudson.tasks.test.AbstractTestResultAction;
 import hudson.tasks.test.TestResult;
 import org.fundacionjala.jenkins.plugins.enforce.Constants;
-import org.jenkinsci.plugins.tokenmacro.DataBoundTokenMacro;
 import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Provides the ENFORCE_TEST_RESULT macro with the generated values by the unit test execution.
  * @autor Navor Nuñez
  */
 @Extension
-public class EnforceTestResultTokenMacro extends DataBoundTokenMacro {
+public class EnforceTestResultTokenMacro extends CachedTokenMacro {
+
+    /**
+     * Maximum amount of failures rendered, zero renders all of them
+     */
+    @Parameter
+    public int maxFailures = 0;
+
+    /**
+     * Maximum bytes rendered of each failure message and stack trace, zero renders them complete
+     */
+    @Parameter
+    public int maxTraceLength = 0;
+
+    /**
+     * Maximum bytes of the whole value, zero does not limit it
+     */
+    @Parameter
+    public int maxLength = 0;
+
+    @Override
+    protected String getCacheKey(AbstractBuild<?, ?> build, String macroName) {
+        AbstractTestResultAction<?> testResultContainer = build.getAction(AbstractTestResultAction.class);
+        if (null == testResultContainer) {
+            return null;
+        }
+        return new StringBuilder(getClass().getName()).append(':').append(testResultContainer.getTotalCount())
+                .append('/').append(testResultContainer.getFailCount())
+                .append('/').append(testResultContainer.getSkipCount())
+                .append(':').append(maxFailures).append('/').append(maxTraceLength).append('/').append(maxLength)
+                .toString();
+    }
 
     @Override
-    public String evaluate(AbstractBuild<?, ?> build, TaskListener listener, String macroName) throws MacroEvaluationException, IOException, InterruptedException {
+    protected String render(AbstractBuild<?, ?> build, TaskListener listener) throws MacroEvaluationException, IOException, InterruptedException {
         AbstractTestResultAction<?> testResultContainer = build.getAction(AbstractTestResultAction.class);
+        if (testResultContainer == null) {
+            return "";
+        }
+        return render(testResultContainer.getBuildHealth().getDescription(), testResultContainer.getFailedTests());
+    }
+
+    /**
+     * Renders the test result description and the failed tests with the parameters of the macro
+     *
+     * @param testResultDescription the test result description
+     * @param failedTests           the failed tests of the build
+     * @return the macro value
+     */
+    String render(String testResultDescription, List<? extends TestResult> failedTests) {
+        if (isBounded()) {
+            return new TestFailureRenderer(maxFailures, maxTraceLength, maxLength).render(testResultDescription, failedTests);
+        }
         StringBuilder testResult = new StringBuilder();
-        if (testResultContainer != null) {
-            String testResultDescription = testResultContainer.getBuildHealth().getDescription();
-            testResult.append(testResultDescription);
-            Integer failedUnitTests = testResultContainer.getFailedTests().size();
-            if (failedUnitTests > 0) {
-                testResult.append("\nFailures:");
-                Integer processedUnitTests = 0;
-                for (TestResult testResultItem : testResultContainer.getFailedTests()) {
-                    testResult.append(Constants.LINE_SEPARATOR).append("\n").append(testResultItem.getFullName());
-                    if ((null != testResultItem.getErrorDetails()) && !testResultItem.getErrorDetails().trim().isEmpty()) {
-                        testResult.append("\n-------- Message --------\n").append(testResultItem.getErrorDetails().trim());
-                    }
-                    if ((null != testResultItem.getStderr()) && !testResultItem.getStderr().trim().isEmpty()) {
-                        testResult.append("\n-------- Stacktrace --------\n").append(testResultItem.getStderr().trim());
-                    }
-                    processedUnitTests++;
-                    if (processedUnitTests.equals(failedUnitTests)) {
-                        testResult.append(Constants.LINE_SEPARATOR);
-                    }
+        testResult.append(testResultDescription);
+        Integer failedUnitTests = failedTests.size();
+        if (failedUnitTests > 0) {
+            testResult.append("\nFailures:");
+            Integer processedUnitTests = 0;
+            for (TestResult testResultItem : failedTests) {
+                testResult.append(Constants.LINE_SEPARATOR).append("\n").append(testResultItem.getFullName());
+                if ((null != testResultItem.getErrorDetails()) && !testResultItem.getErrorDetails().trim().isEmpty()) {
+                    testResult.append("\n-------- Message --------\n").append(testResultItem.getErrorDetails().trim());
+                }
+                if ((null != testResultItem.getStderr()) && !testResultItem.getStderr().trim().isEmpty()) {
+                    testResult.append("\n-------- Stacktrace --------\n").append(testResultItem.getStderr().trim());
+                }
+                processedUnitTests++;
+                if (processedUnitTests.equals(failedUnitTests)) {
+                    testResult.append(Constants.LINE_SEPARATOR);
                 }
             }
         }
         return testResult.toString();
     }
 
+    /**
+     * Verifies if any limit was given, otherwise every failure is rendered as it always was
+     */
+    private boolean isBounded() {
+        return maxFailures > 0 || maxTraceLength > 0 || maxLength > 0;
+    }
+
     @Override
     public boolean acceptsMacroName(String macroName) {
         return Constants.ENFORCE_TEST_RESULT.equalsIgnoreCase(macroName);
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.test.TestResult;
+import org.fundacionjala.jenkins.plugins.enforce.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Renders failed tests grouped by class within a budget, so the output and the memory used to build it stay
+ * bounded however many tests fail. Sizes are counted in UTF-8 bytes.
+ */
+final class TestFailureRenderer {
+
+    private static final String TRUNCATED = "\n[truncated]";
+
+    private final int maxFailures;
+    private final int maxTraceLength;
+    private final int maxLength;
+
+    /**
+     * Creates a renderer, a limit of zero or less means unlimited
+     *
+     * @param maxFailures    maximum amount of failures rendered
+     * @param maxTraceLength maximum bytes rendered of each message and stack trace
+     * @param maxLength      maximum bytes of the whole output
+     */
+    TestFailureRenderer(int maxFailures, int maxTraceLength, int maxLength) {
+        this.maxFailures = maxFailures > 0 ? maxFailures : Integer.MAX_VALUE;
+        this.maxTraceLength = maxTraceLength > 0 ? maxTraceLength : Integer.MAX_VALUE;
+        this.maxLength = maxLength > 0 ? maxLength : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Renders the failures after the test result description
+     *
+     * @param description the test result description
+     * @param failedTests the failed tests of the build
+     * @return the rendered failures
+     */
+    String render(String description, List<? extends TestResult> failedTests) {
+        List<Failure> failures = new ArrayList<Failure>(failedTests.size());
+        for (TestResult failedTest : failedTests) {
+            failures.add(new Failure(getClassName(failedTest), failedTest.getFullName(), failedTest.getErrorDetails(),
+                    failedTest.getStderr()));
+        }
+        return renderFailures(description, failures);
+    }
+
+    /**
+     * Renders the failures after the test result description
+     *
+     * @param description the test result description
+     * @param failedTests the failures of the build
+     * @return the rendered failures
+     */
+    String renderFailures(String description, List<Failure> failedTests) {
+        Output output = new Output(maxLength - utf8Length(TRUNCATED));
+        output.append(description);
+        if (!failedTests.isEmpty()) {
+            output.append("\nFailures: ").append(String.valueOf(failedTests.size()));
+            int rendered = 0;
+            for (Map.Entry<String, List<Failure>> group : groupByClass(failedTests).entrySet()) {
+                if (rendered == maxFailures || output.isFull()) {
+                    break;
+                }
+                output.append(Constants.LINE_SEPARATOR).append("\n").append(group.getKey())
+                        .append(" (").append(String.valueOf(group.getValue().size())).append(" failed)");
+                for (Failure failedTest : group.getValue()) {
+                    if (rendered == maxFailures || output.isFull()) {
+                        break;
+                    }
+                    output.append("\n* ").append(failedTest.name);
+                    appendTrace(output, "\n-------- Message --------\n", failedTest.message);
+                    appendTrace(output, "\n-------- Stacktrace --------\n", failedTest.trace);
+                    rendered++;
+                }
+            }
+            int notRendered = failedTests.size() - rendered;
+            if (notRendered > 0) {
+                output.append("\n... ").append(String.valueOf(notRendered)).append(" more failures not shown");
+            }
+            output.append(Constants.LINE_SEPARATOR);
+        }
+        if (output.isFull()) {
+            output.appendUnbounded(TRUNCATED);
+        }
+        return output.toString();
+    }
+
+    private void appendTrace(Output output, String title, String trace) {
+        if (null == trace) {
+            return;
+        }
+        int start = 0;
+        int end = trace.length();
+        while (start < end && trace.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && trace.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        output.append(title);
+        if (!output.append(trace, start, end, maxTraceLength) && !output.isFull()) {
+            output.append(" [...]");
+        }
+    }
+
+    private static Map<String, List<Failure>> groupByClass(List<Failure> failedTests) {
+        Map<String, List<Failure>> groups = new TreeMap<String, List<Failure>>();
+        for (Failure failedTest : failedTests) {
+            String className = null == failedTest.className ? "" : failedTest.className;
+            List<Failure> group = groups.get(className);
+            if (null == group) {
+                group = new ArrayList<Failure>();
+                groups.put(className, group);
+            }
+            group.add(failedTest);
+        }
+        return groups;
+    }
+
+    private static String getClassName(TestResult failedTest) {
+        if (failedTest instanceof CaseResult) {
+            return ((CaseResult) failedTest).getClassName();
+        }
+        TestResult parent = failedTest.getParent();
+        return null == parent ? "" : parent.getFullName();
+    }
+
+    /**
+     * Gets the UTF-8 bytes of a character, a surrogate counts half of the four bytes of its pair
+     */
+    static int utf8Length(char character) {
+        if (character < 0x80) {
+            return 1;
+        }
+        if (character < 0x800 || Character.isSurrogate(character)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            length += utf8Length(text.charAt(i));
+        }
+        return length;
+    }
+
+    /**
+     * Appends text until the byte budget is spent
+     */
+    private static final class Output {
+
+        private final StringBuilder text = new StringBuilder();
+        private final int budget;
+        private int length;
+        private boolean full;
+
+        Output(int budget) {
+            this.budget = Math.max(0, budget);
+        }
+
+        Output append(CharSequence value) {
+            append(value, 0, value.length(), Integer.MAX_VALUE);
+            return this;
+        }
+
+        /**
+         * Appends a range of a text, a surrogate pair is appended whole or not at all
+         *
+         * @return false if the range was cut by the limit or the budget
+         */
+        boolean append(CharSequence value, int start, int end, int limit) {
+            int appended = 0;
+            for (int i = start; i < end; ) {
+                int count = Character.isHighSurrogate(value.charAt(i)) && i + 1 < end
+                        && Character.isLowSurrogate(value.charAt(i + 1)) ? 2 : 1;
+                int size = count == 2 ? 4 : utf8Length(value.charAt(i));
+                if (length + size > budget) {
+                    full = true;
+                    return false;
+                }
+                if (appended + size > limit) {
+                    return false;
+                }
+                text.append(value, i, i + count);
+                length += size;
+                appended += size;
+                i += count;
+            }
+            return true;
+        }
+
+        void appendUnbounded(String value) {
+            text.append(value);
+        }
+
+        boolean isFull() {
+            return full;
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    /**
+     * Represents a failed test as it is rendered
+     */
+    static final class Failure {
+
+        private final String className;
+        private final String name;
+        private final String message;
+        private final String trace;
+
+        Failure(String className, String name, String message, String trace) {
+            this.className = className;
+            this.name = name;
+            this.message = message;
+            this.trace = trace;
+        }
+    }
+}
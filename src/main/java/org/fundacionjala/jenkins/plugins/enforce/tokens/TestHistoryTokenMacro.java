@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+import org.fundacionjala.jenkins.plugins.enforce.Constants;
+import org.fundacionjala.jenkins.plugins.enforce.CoverageSummary;
+import org.fundacionjala.jenkins.plugins.enforce.TestHistory;
+import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Base of the macros that list tests from the test history of the job, the value is rendered again when a build is
+ * added to or removed from the history.
+ */
+public abstract class TestHistoryTokenMacro extends CachedTokenMacro {
+
+    /**
+     * Maximum amount of tests listed
+     */
+    @Parameter
+    public int count = Constants.TEST_HISTORY_DEFAULT_COUNT;
+
+    /**
+     * Amount of newest builds of the history that are considered
+     */
+    @Parameter
+    public int builds = Constants.TEST_HISTORY_DEFAULT_BUILDS;
+
+    @Override
+    protected String getCacheKey(AbstractBuild<?, ?> build, String macroName) {
+        return new StringBuilder(getClass().getName()).append(':')
+                .append(TestHistory.of(build.getParent()).getVersion())
+                .append(':').append(count).append('/').append(builds).toString();
+    }
+
+    @Override
+    protected String render(AbstractBuild<?, ?> build, TaskListener listener) throws MacroEvaluationException, IOException, InterruptedException {
+        List<TestHistory.TestStats> tests = getTests(TestHistory.of(build.getParent()), Math.max(0, count), Math.max(1, builds));
+        if (tests.isEmpty()) {
+            return "";
+        }
+        StringBuilder value = new StringBuilder(getTitle());
+        for (int i = 0; i < tests.size(); i++) {
+            value.append('\n').append(i + 1).append(". ").append(tests.get(i).getName()).append(": ");
+            appendStats(value, tests.get(i));
+        }
+        return value.toString();
+    }
+
+    /**
+     * Formats milliseconds as seconds with three decimals at most
+     */
+    static String formatSeconds(double milliseconds) {
+        return CoverageSummary.round(milliseconds / 1000, 3) + " s";
+    }
+
+    /**
+     * Gets the tests listed by the macro
+     *
+     * @param history the test history of the job
+     * @param count   maximum amount of tests
+     * @param builds  amount of newest builds considered
+     */
+    protected abstract List<TestHistory.TestStats> getTests(TestHistory history, int count, int builds) throws IOException;
+
+    /**
+     * Gets the first line of the value
+     */
+    protected abstract String getTitle();
+
+    /**
+     * Appends the results of a test after its name
+     */
+    protected abstract void appendStats(StringBuilder value, TestHistory.TestStats test);
+}
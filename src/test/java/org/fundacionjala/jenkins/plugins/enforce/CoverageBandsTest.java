@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageReportParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class CoverageBandsTest {
+
+    @Test
+    public void testGetBand_shouldUseTheLimitsAsLowerBounds() {
+        CoverageBands bands = new CoverageBands(50, 70, 90);
+
+        Assert.assertEquals(0, bands.getBand(0));
+        Assert.assertEquals(0, bands.getBand(49.99));
+        Assert.assertEquals(1, bands.getBand(50));
+        Assert.assertEquals(2, bands.getBand(89.5));
+        Assert.assertEquals(3, bands.getBand(100));
+        Assert.assertEquals("Risk (50% - 69%)", bands.getLabel(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreate_shouldRejectLimitsThatAreNotAscending() {
+        new CoverageBands(80, 75, 95);
+    }
+
+    @Test
+    public void testParse_shouldClassifyTheFilesWithTheGivenBands() throws IOException {
+        CoverageSummary summary = new CoverageReportParser(null, new CoverageBands(50, 70, 90)).parse(new StringReader(
+                "{\"files\": [{\"name\": \"A\", \"covered\": 6, \"uncovered\": 4},"
+                        + "{\"name\": \"B\", \"covered\": 9, \"uncovered\": 1}]}"));
+
+        Assert.assertEquals(1, summary.getFileCount(1));
+        Assert.assertEquals(1, summary.getFileCount(3));
+        Assert.assertEquals("Acceptable", summary.getStatus());
+    }
+
+    @Test
+    public void testParse_shouldKeepTheDefaultBandsOfAReportWithoutFiles() throws IOException {
+        CoverageSummary summary = new CoverageReportParser(null, new CoverageBands(50, 70, 90)).parse(new StringReader(
+                "{\"coverageData\": [[\"Lines\", \"Number\"], [\"Covered\", 60], [\"Not Covered\", 40]],"
+                        + "\"data\": [[\"Lines\", \"Number\"], [\"Danger (0% - 74%)\", 3], [\"Risk (75% - 79%)\", 1],"
+                        + "[\"Acceptable (80% - 94%)\", 0], [\"Safe (95% - 100%)\", 2]]}"));
+
+        Assert.assertEquals(CoverageBands.DEFAULT, summary.getBands());
+        Assert.assertEquals(3, summary.getFileCount(0));
+        Assert.assertEquals("Danger (0% - 74%)", summary.getBands().getLabel(0));
+        Assert.assertEquals("Danger", summary.getStatus());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CoverageHistoryTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("enforce-coverage-history", ".bin");
+        new CoverageHistory(file).write(Collections.<CoverageHistory.Entry>emptyList());
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    private static CoverageSummary summary(long coveredLines) {
+        return new CoverageSummary(coveredLines, 100 - coveredLines, new int[]{1, 2, 3, 4});
+    }
+
+    private static int[] getBuildNumbers(List<CoverageHistory.Entry> entries) {
+        int[] numbers = new int[entries.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = entries.get(i).getBuildNumber();
+        }
+        return numbers;
+    }
+
+    @Test
+    public void testAppend_shouldKeepTheBuildsInOrder() throws IOException {
+        CoverageHistory history = new CoverageHistory(file);
+        history.append(1, 1000, summary(10));
+        history.append(3, 3000, summary(30));
+        history.append(2, 2000, summary(20));
+        history.append(3, 3000, summary(35));
+
+        List<CoverageHistory.Entry> entries = new CoverageHistory(file).getEntries(10);
+
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, getBuildNumbers(entries));
+        Assert.assertEquals(35, entries.get(2).getSummary().getCoveredLines());
+        Assert.assertEquals(2000, entries.get(1).getTimestamp());
+        Assert.assertEquals(4, entries.get(0).getSummary().getFileCount(3));
+        Assert.assertArrayEquals(new int[]{2, 3}, getBuildNumbers(history.getEntries(2)));
+    }
+
+    @Test
+    public void testAppend_shouldStartAMissingHistoryWithTheBuild() throws IOException {
+        Assert.assertTrue(file.delete());
+        CoverageHistory history = new CoverageHistory(file);
+
+        Assert.assertTrue(history.getEntries(10).isEmpty());
+        history.append(7, 7000, summary(70));
+
+        Assert.assertArrayEquals(new int[]{7}, getBuildNumbers(history.getEntries(10)));
+    }
+
+    @Test
+    public void testAppendAll_shouldAddTheOldBuildsOnce() throws IOException {
+        CoverageHistory history = new CoverageHistory(file);
+        history.append(5, 5000, summary(50));
+        long version = history.getVersion();
+
+        int added = history.appendAll(Arrays.asList(new CoverageHistory.Entry(4, 4000, summary(40)),
+                new CoverageHistory.Entry(5, 5000, summary(10)), new CoverageHistory.Entry(2, 2000, summary(20))));
+
+        List<CoverageHistory.Entry> entries = history.getEntries(10);
+        Assert.assertEquals(2, added);
+        Assert.assertArrayEquals(new int[]{2, 4, 5}, getBuildNumbers(entries));
+        Assert.assertEquals(50, entries.get(2).getSummary().getCoveredLines());
+        Assert.assertTrue(history.getVersion() > version);
+        Assert.assertEquals(0, history.appendAll(Collections.singletonList(new CoverageHistory.Entry(4, 4000, summary(40)))));
+    }
+
+    @Test
+    public void testRemove_shouldDropTheBuildFromTheFile() throws IOException {
+        CoverageHistory history = new CoverageHistory(file);
+        history.append(1, 1000, summary(10));
+        history.append(2, 2000, summary(20));
+        long version = history.getVersion();
+
+        history.remove(1);
+        history.remove(5);
+
+        Assert.assertTrue(history.getVersion() > version);
+        Assert.assertArrayEquals(new int[]{2}, getBuildNumbers(new CoverageHistory(file).getEntries(10)));
+    }
+}
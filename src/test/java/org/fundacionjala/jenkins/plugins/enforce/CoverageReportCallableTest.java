@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageArchive;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+public class CoverageReportCallableTest {
+
+    private File workspace;
+    private File report;
+
+    @Before
+    public void setup() throws IOException {
+        workspace = File.createTempFile("enforce-workspace", "");
+        Assert.assertTrue(workspace.delete() && workspace.mkdir());
+        report = new File(workspace, "coverage.json");
+    }
+
+    @After
+    public void cleanup() {
+        delete(workspace);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (null != children) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private void writeReport(String content) throws IOException {
+        writeReport(report, content);
+    }
+
+    private static void writeReport(File report, String content) throws IOException {
+        Assert.assertTrue(report.getParentFile().isDirectory() || report.getParentFile().mkdirs());
+        FileWriter writer = new FileWriter(report);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testInvoke_shouldReuseTheCoverageOfReportsWithTheSameContent() throws Exception {
+        writeReport("{\"files\": [{\"name\": \"A\", \"covered\": 8, \"uncovered\": 2}]}");
+        CoverageReport parsed = new CoverageReportCallable("coverage.json", CoverageBands.DEFAULT)
+                .invoke(workspace, null);
+        Assert.assertFalse(parsed.isUnchanged());
+        Assert.assertEquals(8, parsed.getSummary().getCoveredLines());
+
+        CoverageReport sameFile = new CoverageReportCallable("coverage.json", CoverageBands.DEFAULT,
+                parsed.getFingerprint()).invoke(workspace, null);
+        Assert.assertTrue(sameFile.isUnchanged());
+        Assert.assertEquals(0, sameFile.getFilesRead());
+
+        Assert.assertTrue(report.setLastModified(report.lastModified() + 10000));
+        CoverageReport sameContent = new CoverageReportCallable("coverage.json", CoverageBands.DEFAULT,
+                parsed.getFingerprint()).invoke(workspace, null);
+        Assert.assertTrue(sameContent.isUnchanged());
+        Assert.assertEquals(1, sameContent.getFilesRead());
+        Assert.assertEquals(0, new CoverageReportCallable("coverage.json", CoverageBands.DEFAULT,
+                sameContent.getFingerprint()).invoke(workspace, null).getFilesRead());
+
+        writeReport("{\"files\": [{\"name\": \"A\", \"covered\": 9, \"uncovered\": 1}]}");
+        CoverageReport changed = new CoverageReportCallable("coverage.json", CoverageBands.DEFAULT,
+                parsed.getFingerprint()).invoke(workspace, null);
+        Assert.assertFalse(changed.isUnchanged());
+        Assert.assertEquals(9, changed.getSummary().getCoveredLines());
+    }
+
+    @Test
+    public void testInvoke_shouldReadAnAbsoluteReportPathOutsideOfTheWorkspace() throws Exception {
+        File outside = new File(workspace, "outside/coverage.json");
+        writeReport(outside, "{\"files\": [{\"name\": \"A\", \"covered\": 6, \"uncovered\": 4}]}");
+        File otherWorkspace = new File(workspace, "job");
+        Assert.assertTrue(otherWorkspace.mkdir());
+
+        CoverageReport parsed = new CoverageReportCallable(outside.getAbsolutePath(), CoverageBands.DEFAULT)
+                .invoke(otherWorkspace, null);
+
+        Assert.assertEquals(6, parsed.getSummary().getCoveredLines());
+        Assert.assertEquals(outside.length(), parsed.getBytesRead());
+        Assert.assertTrue(new CoverageReportCallable(outside.getAbsolutePath(), CoverageBands.DEFAULT,
+                parsed.getFingerprint()).invoke(otherWorkspace, null).isUnchanged());
+    }
+
+    @Test
+    public void testInvoke_shouldKeepTheCoverageOfTheLastReportThatListsAClass() throws Exception {
+        writeReport(new File(workspace, "unit/coverage.json"), "{\"files\": ["
+                + "{\"name\": \"Account\", \"coveredLines\": [1, 2], \"uncoveredLines\": [3, 4]},"
+                + "{\"name\": \"Contact\", \"coveredLines\": [1, 2, 3, 4]}]}");
+        writeReport(new File(workspace, "web/coverage.json"), "{\"files\": ["
+                + "{\"name\": \"Account\", \"coveredLines\": [1, 2, 3], \"uncoveredLines\": [4]},"
+                + "{\"name\": \"Lead\", \"uncoveredLines\": [1]}]}");
+
+        CoverageReport merged = new CoverageReportCallable("**/coverage.json", CoverageBands.DEFAULT)
+                .invoke(workspace, null);
+
+        Assert.assertEquals(2, merged.getReports().size());
+        Assert.assertEquals(7, merged.getSummary().getCoveredLines());
+        Assert.assertEquals(2, merged.getSummary().getUncoveredLines());
+        Assert.assertEquals(1, merged.getSummary().getFileCount(0));
+        Assert.assertEquals(1, merged.getSummary().getFileCount(1));
+        Assert.assertEquals(1, merged.getSummary().getFileCount(3));
+        Assert.assertEquals(3, merged.getClassIndex().size());
+        int account = merged.getClassIndex().indexOf("Account");
+        Assert.assertEquals(3, merged.getClassIndex().getCoveredLines(account));
+        Assert.assertEquals(1, merged.getClassIndex().getUncoveredLines(account));
+        CoverageArchive archive = CoverageArchive.read(merged.takeArchive());
+        Assert.assertEquals(3, archive.size());
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, archive.find("Account").getCoveredLineNumbers());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.XmlFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CoverageRollupTest {
+
+    private static final List<String> TEAM_SCOPES = Arrays.asList("items:job/team/", "items:", "view:All");
+    private static final List<String> ROOT_SCOPES = Arrays.asList("items:", "view:All");
+
+    private File file;
+    private CoverageRollup rollup;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("enforce-rollup", ".xml");
+        Assert.assertTrue(file.delete());
+        rollup = new CoverageRollup(new XmlFile(file));
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    private static CoverageSummary summary(long covered, long uncovered) {
+        return new CoverageSummary(covered, uncovered, new int[]{1, 0, 0, 2});
+    }
+
+    @Test
+    public void testUpdate_shouldReplaceTheContributionOfTheJob() {
+        rollup.update("team/api", TEAM_SCOPES, 1, summary(50, 50));
+        rollup.update("web", ROOT_SCOPES, 4, summary(10, 0));
+        rollup.update("team/api", TEAM_SCOPES, 2, summary(80, 20));
+
+        CoverageRollup.Aggregate root = rollup.getAggregate("items:");
+        Assert.assertEquals(2, root.getJobs());
+        Assert.assertEquals(90, root.getCoveredLines());
+        Assert.assertEquals(20, root.getUncoveredLines());
+        Assert.assertEquals(2, root.getFileCount(0));
+        Assert.assertEquals(1, root.getJobCount(2));
+        Assert.assertEquals(1, root.getJobCount(3));
+        Assert.assertEquals(80, rollup.getAggregate("items:job/team/").getCoveredLines());
+        Assert.assertEquals(2, rollup.getBuildNumber("team/api"));
+    }
+
+    @Test
+    public void testUpdate_shouldIgnoreOlderBuilds() {
+        rollup.update("web", ROOT_SCOPES, 5, summary(90, 10));
+        rollup.update("web", ROOT_SCOPES, 3, summary(10, 90));
+
+        Assert.assertEquals(5, rollup.getBuildNumber("web"));
+        Assert.assertEquals(90, rollup.getAggregate("view:All").getCoveredLines());
+    }
+
+    @Test
+    public void testUpdate_shouldSaveEveryFewUpdatesAndOnFlush() {
+        for (int i = 1; i < Constants.ROLLUP_SAVE_INTERVAL; i++) {
+            rollup.update("web", ROOT_SCOPES, i, summary(i, 1));
+        }
+        Assert.assertFalse(file.exists());
+
+        rollup.update("web", ROOT_SCOPES, Constants.ROLLUP_SAVE_INTERVAL, summary(1, 1));
+        Assert.assertTrue(file.exists());
+
+        Assert.assertTrue(file.delete());
+        rollup.flush();
+        Assert.assertFalse(file.exists());
+        rollup.update("web", ROOT_SCOPES, Constants.ROLLUP_SAVE_INTERVAL + 1, summary(1, 1));
+        rollup.flush();
+        Assert.assertTrue(file.exists());
+    }
+
+    @Test
+    public void testGetAggregate_shouldNotCountTheExcludedJobs() {
+        rollup.update("team/api", TEAM_SCOPES, 1, summary(30, 10));
+        rollup.update("web", ROOT_SCOPES, 1, summary(20, 0));
+
+        Assert.assertEquals(Arrays.asList("team/api"), rollup.getJobNames("items:job/team/"));
+        CoverageRollup.Aggregate root = rollup.getAggregate("items:", Collections.singletonList("team/api"));
+        Assert.assertEquals(1, root.getJobs());
+        Assert.assertEquals(20, root.getCoveredLines());
+        Assert.assertEquals(0, root.getUncoveredLines());
+        Assert.assertNull(rollup.getAggregate("items:job/team/", Collections.singletonList("team/api")));
+        Assert.assertEquals(2, rollup.getAggregate("items:").getJobs());
+    }
+
+    @Test
+    public void testReplaceDeleted_shouldFallBackToTheOlderBuild() {
+        rollup.update("web", ROOT_SCOPES, 7, summary(90, 10));
+
+        rollup.replaceDeleted("web", 6, ROOT_SCOPES, 5, summary(1, 1));
+        Assert.assertEquals(7, rollup.getBuildNumber("web"));
+
+        rollup.replaceDeleted("web", 7, ROOT_SCOPES, 5, summary(60, 40));
+        Assert.assertEquals(5, rollup.getBuildNumber("web"));
+        Assert.assertEquals(60, rollup.getAggregate("items:").getCoveredLines());
+        Assert.assertEquals(1, rollup.getAggregate("items:").getJobs());
+
+        rollup.replaceDeleted("web", 5, null, 0, null);
+        Assert.assertEquals(0, rollup.getBuildNumber("web"));
+        Assert.assertNull(rollup.getAggregate("items:"));
+        Assert.assertTrue(file.exists());
+    }
+
+    @Test
+    public void testMove_shouldMoveTheContributionToTheNewScopes() {
+        rollup.update("team/api", TEAM_SCOPES, 3, summary(30, 10));
+
+        rollup.move("team/api", "api", ROOT_SCOPES);
+
+        Assert.assertEquals(0, rollup.getBuildNumber("team/api"));
+        Assert.assertEquals(3, rollup.getBuildNumber("api"));
+        Assert.assertNull(rollup.getAggregate("items:job/team/"));
+        Assert.assertEquals(30, rollup.getAggregate("items:").getCoveredLines());
+        Assert.assertEquals(1, rollup.getAggregate("view:All").getJobs());
+    }
+
+    @Test
+    public void testRemoveJobs_shouldDropTheJobsOfAFolder() {
+        rollup.update("team/api", TEAM_SCOPES, 1, summary(30, 10));
+        rollup.update("team/web", TEAM_SCOPES, 1, summary(20, 0));
+        rollup.update("teamwork", ROOT_SCOPES, 1, summary(5, 5));
+
+        rollup.removeJobs("team/");
+
+        Assert.assertNull(rollup.getAggregate("items:job/team/"));
+        Assert.assertEquals(1, rollup.getAggregate("items:").getJobs());
+        Assert.assertEquals(5, rollup.getAggregate("items:").getCoveredLines());
+        Assert.assertEquals(1, rollup.getBuildNumber("teamwork"));
+    }
+}
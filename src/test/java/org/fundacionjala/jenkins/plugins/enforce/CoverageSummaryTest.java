@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class CoverageSummaryTest {
+
+    @Test
+    public void testFromPieChartData_shouldKeepLinesAndFileCounts() {
+        PieChartData pieChartData = new PieChartData();
+        pieChartData.setCoverageData(new Object[][]{{"Lines", "Number"}, {"Covered", 2336.0}, {"Not Covered", 210.0}});
+        pieChartData.setData(new Object[][]{{"Lines", "Number"}, {"Danger (0% - 74%)", 11.0},
+                {"Risk (75% - 79%)", 5.0}, {"Acceptable (80% - 94%)", 19.0}, {"Safe (95% - 100%)", 20.0}});
+
+        CoverageSummary summary = CoverageSummary.fromPieChartData(pieChartData);
+
+        Assert.assertEquals(2336, summary.getCoveredLines());
+        Assert.assertEquals(210, summary.getUncoveredLines());
+        Assert.assertEquals(11, summary.getFileCount(0));
+        Assert.assertEquals(20, summary.getFileCount(3));
+    }
+
+    @Test
+    public void testFromPieChartData_shouldBeNullWithoutCoverageData() {
+        Assert.assertNull(CoverageSummary.fromPieChartData(new PieChartData()));
+    }
+
+    @Test
+    public void testToPieChartData_shouldRenderTheSameCoverage() {
+        CoverageSummary summary = new CoverageSummary(2336, 210, new int[]{11, 5, 19, 20});
+
+        PieChartData pieChartData = summary.toPieChartData();
+
+        Assert.assertTrue(pieChartData.coverageDataExists());
+        Assert.assertTrue(pieChartData.dataExists());
+        Assert.assertEquals(91.75, pieChartData.getRoundedPercentage(2), 0);
+        Assert.assertEquals(summary, CoverageSummary.fromPieChartData(pieChartData));
+    }
+
+    @Test
+    public void testGetStatus_shouldUseTheBandOfThePercentage() {
+        CoverageSummary summary = new CoverageSummary(2336, 210, new int[]{11, 5, 19, 20});
+
+        Assert.assertEquals("Acceptable", summary.getStatus());
+        Assert.assertEquals("Danger (0% - 74%) = 11 files. Risk (75% - 79%) = 5 files. "
+                + "Acceptable (80% - 94%) = 19 files. Safe (95% - 100%) = 20 files. ", summary.getFileCoverageStatus());
+        Assert.assertEquals("Safe", new CoverageSummary(95, 5, new int[4]).getStatus());
+    }
+
+    @Test
+    public void testRound_shouldRoundHalfUp() {
+        Assert.assertEquals(91.75, CoverageSummary.round(91.7478, 2), 0);
+        Assert.assertEquals(0.13, CoverageSummary.round(0.125, 2), 0);
+        Assert.assertEquals(-2.0, CoverageSummary.round(-1.5, 0), 0);
+    }
+
+    @Test
+    public void testRound_shouldKeepTheResultsOfTheBaselineRounding() {
+        Assert.assertEquals(0.01, CoverageSummary.round(0.015, 2), 0);
+        Assert.assertEquals(0.24, CoverageSummary.round(0.245, 2), 0);
+        Assert.assertEquals(0.3, CoverageSummary.round(0.305, 2), 0);
+    }
+
+    @Test
+    public void testMerge_shouldAddTheCoverageOfEveryReport() {
+        CoverageSummary merged = CoverageSummary.merge(Arrays.asList(
+                new CoverageSummary(80, 20, new int[]{0, 1, 2, 3}),
+                new CoverageSummary(10, 90, new int[]{4, 0, 0, 1})));
+
+        Assert.assertEquals(90, merged.getCoveredLines());
+        Assert.assertEquals(110, merged.getUncoveredLines());
+        Assert.assertEquals(4, merged.getFileCount(0));
+        Assert.assertEquals(4, merged.getFileCount(3));
+        Assert.assertEquals(45.0, merged.getPercentage(), 0);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class EnforceProjectActionTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void testHistoryPage_shouldEscapeTheTestNames() throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+        project.getPublishersList().add(new EnforcePublisher("coverage.json", 0));
+        TestHistory.Results results = new TestHistory.Results();
+        results.add("Suite.<img src=x onerror=alert(1)>", 10, TestHistory.PASSED);
+        TestHistory.of(project).append(1, results);
+
+        JenkinsRule.WebClient webClient = jenkins.createWebClient();
+        webClient.setJavaScriptEnabled(false);
+        String page = webClient.goTo(project.getUrl() + Constants.ACTION_URL_NAME + "/testhistory")
+                .getWebResponse().getContentAsString();
+
+        Assert.assertFalse(page.contains("<img src=x"));
+        Assert.assertTrue(page.contains("Suite.&lt;img src=x onerror=alert(1)&gt;"));
+    }
+}
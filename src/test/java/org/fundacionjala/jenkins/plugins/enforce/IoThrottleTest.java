@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IoThrottleTest {
+
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void testReserve_shouldQueueTheReadsOverTheBudget() {
+        IoThrottle throttle = new IoThrottle(1000);
+
+        Assert.assertEquals(0, throttle.reserve(500, 0));
+        Assert.assertEquals(SECOND / 2, throttle.reserve(1000, 0));
+        Assert.assertEquals(SECOND / 2, throttle.reserve(100, SECOND));
+    }
+
+    @Test
+    public void testReserve_shouldNotSaveTheUnusedBudget() {
+        IoThrottle throttle = new IoThrottle(1000);
+        throttle.reserve(1000, 0);
+
+        Assert.assertEquals(0, throttle.reserve(2000, 10 * SECOND));
+        Assert.assertEquals(2 * SECOND, throttle.reserve(1, 10 * SECOND));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RunCacheTest {
+
+    private static Callable<String> loader(final String value, final AtomicInteger loads) {
+        return new Callable<String>() {
+            public String call() {
+                loads.incrementAndGet();
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void testGet_shouldLoadTheValueOnce() throws Exception {
+        RunCache<String> cache = new RunCache<String>("test", 2);
+        AtomicInteger loads = new AtomicInteger();
+
+        Assert.assertEquals("a", cache.get("job#1", loader("a", loads)));
+        Assert.assertEquals("a", cache.get("job#1", loader("b", loads)));
+        Assert.assertEquals(1, loads.get());
+
+        cache.invalidate("job#1");
+        Assert.assertEquals("b", cache.get("job#1", loader("b", loads)));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testGet_shouldEvictTheLeastRecentlyUsedBuild() throws Exception {
+        RunCache<String> cache = new RunCache<String>("test", 2);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("job#1", loader("1", loads));
+        cache.get("job#2", loader("2", loads));
+        cache.get("job#1", loader("1", loads));
+
+        cache.get("job#3", loader("3", loads));
+        cache.get("job#1", loader("1", loads));
+        Assert.assertEquals(3, loads.get());
+        cache.get("job#2", loader("2", loads));
+
+        Assert.assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testGet_shouldCloseTheEvictedAndInvalidatedValues() throws Exception {
+        RunCache<Closeable> cache = new RunCache<Closeable>("test", 1);
+        final AtomicInteger closed = new AtomicInteger();
+        Callable<Closeable> loader = new Callable<Closeable>() {
+            public Closeable call() {
+                return new Closeable() {
+                    public void close() {
+                        closed.incrementAndGet();
+                    }
+                };
+            }
+        };
+        cache.get("job#1", loader);
+
+        cache.get("job#2", loader);
+        Assert.assertEquals(1, closed.get());
+        cache.invalidate("job#2");
+        Assert.assertEquals(2, closed.get());
+        cache.invalidate("job#2");
+        Assert.assertEquals(2, closed.get());
+    }
+
+    @Test
+    public void testGet_shouldNotKeepMissingValuesOrFailedLoads() throws Exception {
+        RunCache<String> cache = new RunCache<String>("test", 2);
+        AtomicInteger loads = new AtomicInteger();
+
+        Assert.assertNull(cache.get("job#1", loader(null, loads)));
+        try {
+            cache.get("job#1", new Callable<String>() {
+                public String call() throws IOException {
+                    throw new IOException("The report is being written");
+                }
+            });
+            Assert.fail();
+        } catch (IOException exception) {
+            Assert.assertEquals("The report is being written", exception.getMessage());
+        }
+        Assert.assertEquals("a", cache.get("job#1", loader("a", loads)));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testGet_shouldShareTheLoadOfConcurrentThreads() throws Exception {
+        final RunCache<String> cache = new RunCache<String>("test", 2);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Callable<String> request = new Callable<String>() {
+                public String call() throws Exception {
+                    return cache.get("job#1", new Callable<String>() {
+                        public String call() throws InterruptedException {
+                            loads.incrementAndGet();
+                            loading.countDown();
+                            release.await();
+                            return "a";
+                        }
+                    });
+                }
+            };
+            Future<String> first = executor.submit(request);
+            Assert.assertTrue(loading.await(10, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(request);
+            Future<String> third = executor.submit(request);
+            release.countDown();
+
+            Assert.assertEquals("a", first.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals("a", second.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals("a", third.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class TestHistoryTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("enforce-test-history", ".bin");
+        Assert.assertTrue(file.delete());
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    private static TestHistory.Results results(int slowDuration, byte flakyStatus) {
+        TestHistory.Results results = new TestHistory.Results();
+        results.add("AccountTest.testSlow", slowDuration, TestHistory.PASSED);
+        results.add("AccountTest.testFast", 10, TestHistory.PASSED);
+        results.add("AccountTest.testFlaky", 20, flakyStatus);
+        return results;
+    }
+
+    @Test
+    public void testGetSlowest_shouldSortTheTestsByAverageDuration() throws IOException {
+        TestHistory history = new TestHistory(file, 10);
+        history.append(1, results(1000, TestHistory.PASSED));
+        history.append(2, results(3000, TestHistory.FAILED));
+
+        List<TestHistory.TestStats> slowest = history.getSlowest(2, 10);
+
+        Assert.assertEquals(2, slowest.size());
+        Assert.assertEquals("AccountTest.testSlow", slowest.get(0).getName());
+        Assert.assertEquals(2000, slowest.get(0).getAverageDuration(), 0);
+        Assert.assertEquals(3000, slowest.get(0).getMaxDuration());
+        Assert.assertEquals("AccountTest.testFlaky", slowest.get(1).getName());
+        Assert.assertEquals(3000, history.getSlowest(1, 1).get(0).getAverageDuration(), 0);
+    }
+
+    @Test
+    public void testGetFlaky_shouldCountTheChangesOfResult() throws IOException {
+        TestHistory history = new TestHistory(file, 10);
+        history.append(1, results(100, TestHistory.PASSED));
+        history.append(2, results(100, TestHistory.FAILED));
+        history.append(3, results(100, TestHistory.SKIPPED));
+        history.append(4, results(100, TestHistory.PASSED));
+
+        List<TestHistory.TestStats> flaky = history.getFlaky(10, 10);
+
+        Assert.assertEquals(1, flaky.size());
+        Assert.assertEquals("AccountTest.testFlaky", flaky.get(0).getName());
+        Assert.assertEquals(3, flaky.get(0).getRuns());
+        Assert.assertEquals(1, flaky.get(0).getFailures());
+        Assert.assertEquals(2, flaky.get(0).getFlips());
+        Assert.assertTrue(history.getFlaky(10, 1).isEmpty());
+    }
+
+    @Test
+    public void testLoad_shouldReadTheAppendedAndRewrittenBuilds() throws IOException {
+        TestHistory history = new TestHistory(file, 2);
+        history.append(1, results(100, TestHistory.PASSED));
+        history.append(3, results(300, TestHistory.PASSED));
+        history.append(2, results(200, TestHistory.PASSED));
+        history.append(4, results(400, TestHistory.PASSED));
+
+        TestHistory loaded = new TestHistory(file, 2);
+
+        Assert.assertEquals(2, loaded.getBuildCount());
+        Assert.assertTrue(loaded.contains(3));
+        loaded.remove(3);
+        Assert.assertFalse(loaded.contains(3));
+        Assert.assertEquals(400, loaded.getSlowest(1, 10).get(0).getAverageDuration(), 0);
+        Assert.assertEquals(1, new TestHistory(file, 2).getBuildCount());
+    }
+
+    @Test
+    public void testAppendAll_shouldAddTheOldBuildsThatAreNotInTheHistory() throws IOException {
+        TestHistory history = new TestHistory(file, 10);
+        history.append(5, results(500, TestHistory.PASSED));
+        Map<Integer, TestHistory.Results> oldBuilds = new TreeMap<Integer, TestHistory.Results>();
+        oldBuilds.put(5, results(9000, TestHistory.PASSED));
+        oldBuilds.put(3, results(300, TestHistory.PASSED));
+        oldBuilds.put(4, results(400, TestHistory.FAILED));
+
+        Assert.assertEquals(2, history.appendAll(oldBuilds));
+
+        TestHistory loaded = new TestHistory(file, 10);
+        Assert.assertEquals(3, loaded.getBuildCount());
+        Assert.assertEquals(500, loaded.getSlowest(1, 1).get(0).getAverageDuration(), 0);
+        Assert.assertEquals(400, loaded.getSlowest(1, 3).get(0).getAverageDuration(), 0);
+        Assert.assertEquals(0, loaded.appendAll(oldBuilds));
+    }
+
+    @Test
+    public void testLoad_shouldNotRewriteAFileWithAnIncompleteRecord() throws IOException {
+        TestHistory history = new TestHistory(file, 10);
+        history.append(1, results(100, TestHistory.PASSED));
+        history.append(2, results(200, TestHistory.PASSED));
+        RandomAccessFile cut = new RandomAccessFile(file, "rw");
+        try {
+            cut.setLength(cut.length() - 3);
+        } finally {
+            cut.close();
+        }
+        long length = file.length();
+
+        TestHistory loaded = new TestHistory(file, 10);
+        Assert.assertEquals(1, loaded.getBuildCount());
+        Assert.assertEquals(length, file.length());
+
+        loaded.append(3, results(300, TestHistory.PASSED));
+        Assert.assertEquals(2, new TestHistory(file, 10).getBuildCount());
+    }
+
+    @Test
+    public void testLoad_shouldKeepOnlyTheHistoriesUsedLast() throws IOException {
+        List<TestHistory> histories = new ArrayList<TestHistory>();
+        for (int i = 0; i <= Constants.TEST_HISTORY_CACHE_SIZE; i++) {
+            TestHistory history = new TestHistory(file, 10);
+            history.getBuildCount();
+            histories.add(history);
+        }
+
+        Assert.assertFalse(histories.get(0).isLoaded());
+        Assert.assertTrue(histories.get(Constants.TEST_HISTORY_CACHE_SIZE).isLoaded());
+        Assert.assertEquals(0, histories.get(0).getBuildCount());
+        Assert.assertTrue(histories.get(0).isLoaded());
+    }
+}
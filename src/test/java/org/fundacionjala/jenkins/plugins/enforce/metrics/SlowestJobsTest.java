@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SlowestJobsTest {
+
+    @Test
+    public void testUpdate_shouldKeepTheSlowestRunOfTheSlowestJobs() {
+        SlowestJobs slowest = new SlowestJobs(2);
+        slowest.update("api", 1, TimeUnit.MILLISECONDS.toNanos(30));
+        slowest.update("web", 1, TimeUnit.MILLISECONDS.toNanos(10));
+        slowest.update("api", 2, TimeUnit.MILLISECONDS.toNanos(20));
+        slowest.update("docs", 1, TimeUnit.MILLISECONDS.toNanos(5));
+        slowest.update("mobile", 4, TimeUnit.MILLISECONDS.toNanos(50));
+
+        List<SlowestJobs.Entry> entries = slowest.getEntries();
+
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("mobile", entries.get(0).getJobName());
+        Assert.assertEquals(50.0, entries.get(0).getDuration(), 0);
+        Assert.assertEquals("api", entries.get(1).getJobName());
+        Assert.assertEquals(1, entries.get(1).getBuildNumber());
+
+        slowest.remove("mobile");
+        Assert.assertEquals(1, slowest.getEntries().size());
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TimerTest {
+
+    @Test
+    public void testGetPercentile_shouldUseTheBucketOfTheRun() {
+        Timer timer = new Timer();
+        for (int i = 0; i < 99; i++) {
+            timer.update(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        timer.update(TimeUnit.MILLISECONDS.toNanos(50));
+
+        Assert.assertEquals(100, timer.getCount());
+        Assert.assertEquals(50.0, timer.getMax(), 0);
+        Assert.assertEquals(0.128, timer.getPercentile(0.5), 0);
+        Assert.assertEquals(0.128, timer.getPercentile(0.99), 0);
+        Assert.assertEquals(50.0, timer.getPercentile(1), 0);
+        Assert.assertEquals(0.599, timer.getMean(), 0.0001);
+    }
+}
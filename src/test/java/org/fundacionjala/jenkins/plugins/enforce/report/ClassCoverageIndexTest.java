@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class ClassCoverageIndexTest {
+
+    private static ClassCoverageIndex classIndex;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        ClassCoverageIndex.Builder builder = new ClassCoverageIndex.Builder();
+        new CoverageReportParser(builder).parse(new StringReader("{\"files\": ["
+                + "{\"name\": \"LeadService\", \"covered\": 5, \"uncovered\": 5},"
+                + "{\"name\": \"AccountService\", \"covered\": 9, \"uncovered\": 1},"
+                + "{\"name\": \"accountHelper\", \"covered\": 1, \"uncovered\": 9},"
+                + "{\"name\": \"ContactService\", \"covered\": 10, \"uncovered\": 0}]}"));
+        classIndex = builder.build();
+    }
+
+    @Test
+    public void testGetPage_shouldSortByName() {
+        ClassCoverageIndex.Page page = classIndex.getPage("", ClassCoverageIndex.Sort.NAME, false, 0, 10);
+
+        Assert.assertEquals(4, page.getTotal());
+        Assert.assertEquals("accountHelper", classIndex.getName(page.getIndexes()[0]));
+        Assert.assertEquals("AccountService", classIndex.getName(page.getIndexes()[1]));
+        Assert.assertEquals("LeadService", classIndex.getName(page.getIndexes()[3]));
+    }
+
+    @Test
+    public void testGetPage_shouldSortByPercentageDescending() {
+        ClassCoverageIndex.Page page = classIndex.getPage("", ClassCoverageIndex.Sort.PERCENTAGE, true, 1, 2);
+
+        Assert.assertEquals(2, page.getIndexes().length);
+        Assert.assertEquals("AccountService", classIndex.getName(page.getIndexes()[0]));
+        Assert.assertEquals("LeadService", classIndex.getName(page.getIndexes()[1]));
+    }
+
+    @Test
+    public void testGetPage_shouldFilterByPrefixIgnoringCase() {
+        ClassCoverageIndex.Page page = classIndex.getPage("ACCOUNT", ClassCoverageIndex.Sort.UNCOVERED, false, 0, 10);
+
+        Assert.assertEquals(2, page.getTotal());
+        Assert.assertEquals("AccountService", classIndex.getName(page.getIndexes()[0]));
+        Assert.assertEquals("accountHelper", classIndex.getName(page.getIndexes()[1]));
+    }
+
+    @Test
+    public void testLoad_shouldReadTheSavedColumns() throws IOException {
+        File file = File.createTempFile("enforce-classes", ".idx");
+        try {
+            classIndex.save(file);
+            ClassCoverageIndex loaded = ClassCoverageIndex.load(file);
+
+            Assert.assertEquals(4, loaded.size());
+            int index = loaded.indexOf("ContactService");
+            Assert.assertEquals(10, loaded.getCoveredLines(index));
+            Assert.assertEquals(100.0, loaded.getPercentage(index), 0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFindRegressions_shouldCompareTheClassesOfBothIndexes() throws IOException {
+        ClassCoverageIndex.Builder builder = new ClassCoverageIndex.Builder();
+        new CoverageReportParser(builder).parse(new StringReader("{\"files\": ["
+                + "{\"name\": \"LeadService\", \"covered\": 4, \"uncovered\": 6},"
+                + "{\"name\": \"AccountService\", \"covered\": 10, \"uncovered\": 0},"
+                + "{\"name\": \"OpportunityService\", \"covered\": 0, \"uncovered\": 10},"
+                + "{\"name\": \"ContactService\", \"covered\": 10, \"uncovered\": 0}]}"));
+
+        List<ClassCoverageIndex.Regression> regressions = builder.build().findRegressions(classIndex);
+
+        Assert.assertEquals(1, regressions.size());
+        Assert.assertEquals("LeadService", regressions.get(0).getName());
+        Assert.assertEquals(50.0, regressions.get(0).getBaselinePercentage(), 0);
+        Assert.assertEquals(40.0, regressions.get(0).getPercentage(), 0);
+    }
+}
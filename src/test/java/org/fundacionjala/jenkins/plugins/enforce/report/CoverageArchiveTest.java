@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class CoverageArchiveTest {
+
+    private static byte[] buildArchive(int classes) throws IOException {
+        StringBuilder report = new StringBuilder("{\"files\": [");
+        for (int i = 0; i < classes; i++) {
+            report.append(i == 0 ? "" : ",").append("{\"name\": \"AccountService").append(i)
+                    .append("\", \"coveredLines\": [").append(i + 3).append(", 1, 2], \"uncoveredLines\": [")
+                    .append(i + 10).append("]}");
+        }
+        CoverageArchive.Builder builder = new CoverageArchive.Builder();
+        new CoverageReportParser(builder).parse(new StringReader(report.append("]}").toString()));
+        return builder.build();
+    }
+
+    @Test
+    public void testFind_shouldDecodeTheLinesOfAClassInAnyBlock() throws IOException {
+        CoverageArchive archive = CoverageArchive.read(buildArchive(3 * CoverageArchive.BLOCK_CLASSES));
+
+        Assert.assertEquals(3 * CoverageArchive.BLOCK_CLASSES, archive.size());
+        CoverageArchive.ClassLines lines = archive.find("AccountService90");
+        Assert.assertEquals(3, lines.getCoveredLines());
+        Assert.assertArrayEquals(new int[]{1, 2, 93}, lines.getCoveredLineNumbers());
+        Assert.assertArrayEquals(new int[]{100}, lines.getUncoveredLineNumbers());
+        Assert.assertNotNull(archive.find("AccountService0"));
+        Assert.assertNull(archive.find("AccountService"));
+        Assert.assertNull(archive.find("ZZZ"));
+    }
+
+    @Test
+    public void testGetRanges_shouldListTheRunsOfCoveredAndUncoveredLinesInOrder() throws IOException {
+        CoverageArchive archive = CoverageArchive.read(buildArchive(3));
+
+        List<CoverageArchive.LineRange> ranges = archive.find("AccountService2").getRanges();
+
+        Assert.assertEquals(3, ranges.size());
+        Assert.assertEquals(1, ranges.get(0).getFirstLine());
+        Assert.assertEquals(2, ranges.get(0).getLastLine());
+        Assert.assertTrue(ranges.get(0).isCovered());
+        Assert.assertEquals(5, ranges.get(1).getFirstLine());
+        Assert.assertEquals(5, ranges.get(1).getLastLine());
+        Assert.assertEquals(12, ranges.get(2).getFirstLine());
+        Assert.assertEquals("uncovered", ranges.get(2).getStatus());
+    }
+
+    @Test
+    public void testOpen_shouldMapTheArchiveFileUntilItIsClosed() throws IOException {
+        File file = File.createTempFile("enforce-coverage", ".archive");
+        try {
+            FileOutputStream output = new FileOutputStream(file);
+            try {
+                output.write(buildArchive(10));
+            } finally {
+                output.close();
+            }
+            CoverageArchive archive = CoverageArchive.open(file);
+
+            Assert.assertEquals(10, archive.size());
+            Assert.assertEquals(1, archive.find("AccountService9").getUncoveredLines());
+            archive.close();
+            try {
+                archive.find("AccountService9");
+                Assert.fail();
+            } catch (IOException exception) {
+                Assert.assertEquals("The coverage archive is closed", exception.getMessage());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import org.fundacionjala.jenkins.plugins.enforce.CoverageSummary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CoverageReportParserTest {
+
+    private static final String ARRAYS_REPORT = "{\"title\": \"Coverage\","
+            + "\"coverageData\": [[\"Lines\", \"Number\"], [\"Covered\", 2336], [\"Not Covered\", 210]],"
+            + "\"data\": [[\"Lines\", \"Number\"], [\"Danger (0% - 74%)\", 11], [\"Risk (75% - 79%)\", 5],"
+            + "[\"Acceptable (80% - 94%)\", 19], [\"Safe (95% - 100%)\", 20]]}";
+
+    private static final String FILES_REPORT = "{\"files\": ["
+            + "{\"name\": \"AccountService\", \"coveredLines\": [1, 2, 3], \"uncoveredLines\": [4]},"
+            + "{\"name\": \"ContactService\", \"covered\": 19, \"uncovered\": 1},"
+            + "{\"uncoveredLines\": [10, 11], \"name\": \"LeadService\"}]}";
+
+    @Test
+    public void testParse_shouldReadTheArraysSchema() throws IOException {
+        CoverageReportParser parser = new CoverageReportParser();
+
+        CoverageSummary summary = parser.parse(new StringReader(ARRAYS_REPORT));
+
+        Assert.assertEquals("Coverage", parser.getTitle());
+        Assert.assertEquals(2336, summary.getCoveredLines());
+        Assert.assertEquals(210, summary.getUncoveredLines());
+        Assert.assertEquals(11, summary.getFileCount(0));
+        Assert.assertEquals(5, summary.getFileCount(1));
+        Assert.assertEquals(19, summary.getFileCount(2));
+        Assert.assertEquals(20, summary.getFileCount(3));
+        Assert.assertEquals("Coverage", summary.toPieChartData().getTitle());
+    }
+
+    @Test
+    public void testParse_shouldAggregateThePerFileSchema() throws IOException {
+        final List<String> names = new ArrayList<String>();
+        CoverageReportParser parser = new CoverageReportParser(new CoverageReportHandler() {
+            public void onFile(FileCoverage file) {
+                names.add(file.getName() + ":" + file.getCoveredLines() + "/" + file.getUncoveredLines());
+            }
+        });
+
+        CoverageSummary summary = parser.parse(new StringReader(FILES_REPORT));
+
+        Assert.assertEquals(22, summary.getCoveredLines());
+        Assert.assertEquals(4, summary.getUncoveredLines());
+        Assert.assertEquals(1, summary.getFileCount(0));
+        Assert.assertEquals(1, summary.getFileCount(1));
+        Assert.assertEquals(0, summary.getFileCount(2));
+        Assert.assertEquals(1, summary.getFileCount(3));
+        Assert.assertEquals("[AccountService:3/1, ContactService:19/1, LeadService:0/2]", names.toString());
+    }
+
+    @Test
+    public void testParse_shouldBeNullWithoutCoverageData() throws IOException {
+        Assert.assertNull(new CoverageReportParser().parse(new StringReader("{\"title\": \"Empty\"}")));
+    }
+}
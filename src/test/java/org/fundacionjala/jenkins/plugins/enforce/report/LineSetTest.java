@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+public class LineSetTest {
+
+    @Test
+    public void testOf_shouldKeepRunsOfConsecutiveLines() {
+        LineSet lines = LineSet.of(new int[]{12, 3, 4, 5, 11, 4, 20, 0}, 7);
+
+        Assert.assertEquals(3, lines.getRunCount());
+        Assert.assertEquals(6, lines.size());
+        Assert.assertTrue(lines.contains(4));
+        Assert.assertTrue(lines.contains(12));
+        Assert.assertFalse(lines.contains(6));
+        Assert.assertFalse(lines.contains(2));
+        Assert.assertEquals(20, lines.getLastLine());
+    }
+
+    @Test
+    public void testRead_shouldDecodeTheWrittenRuns() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        LineSet.of(new int[]{1, 2, 3, 300, 301, 70000}, 6).write(output);
+
+        LineSet lines = LineSet.read(ByteBuffer.wrap(output.toByteArray()));
+
+        Assert.assertArrayEquals(new int[]{1, 2, 3, 300, 301, 70000}, lines.toArray());
+    }
+}
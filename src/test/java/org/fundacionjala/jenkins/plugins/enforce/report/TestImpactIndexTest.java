@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.report;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TestImpactIndexTest {
+
+    private static final String REPORT = "{\"files\": ["
+            + "{\"name\": \"AccountService\", \"covered\": 10, \"uncovered\": 2, "
+            + "\"tests\": [\"AccountServiceTest.testCreate\", \"AccountServiceTest.testUpdate\"]},"
+            + "{\"name\": \"ContactService\", \"covered\": 5, \"uncovered\": 5, "
+            + "\"tests\": [\"ContactServiceTest.testCreate\", \"AccountServiceTest.testCreate\"]},"
+            + "{\"name\": \"Utils\", \"covered\": 1, \"uncovered\": 0}]}";
+
+    private static TestImpactIndex buildIndex() throws IOException {
+        TestImpactIndex.Builder builder = new TestImpactIndex.Builder();
+        new CoverageReportParser(builder).parse(new StringReader(REPORT));
+        return builder.build();
+    }
+
+    @Test
+    public void testSelect_shouldUniteTheTestsOfTheChangedClasses() throws IOException {
+        TestImpactIndex index = buildIndex();
+
+        TestImpactIndex.Selection selection = index.select(Arrays.asList("contactservice", "NewService"));
+
+        Assert.assertEquals(2, index.getClassCount());
+        Assert.assertEquals(3, index.getTestCount());
+        Assert.assertEquals(Arrays.asList("AccountServiceTest.testCreate", "ContactServiceTest.testCreate"),
+                selection.getTests());
+        Assert.assertEquals(Collections.singletonList("NewService"), selection.getUnknownClasses());
+        Assert.assertNull(index.getTests("Utils"));
+    }
+
+    @Test
+    public void testSelect_shouldSelectTheTestsOfAChangedTestClass() throws IOException {
+        TestImpactIndex.Selection selection = buildIndex().select(Collections.singletonList("AccountServiceTest"));
+
+        Assert.assertEquals(Arrays.asList("AccountServiceTest.testCreate", "AccountServiceTest.testUpdate"),
+                selection.getTests());
+        Assert.assertTrue(selection.getUnknownClasses().isEmpty());
+    }
+
+    @Test
+    public void testLoad_shouldReadTheSavedIndex() throws IOException {
+        File file = File.createTempFile("enforce-test-impact", ".idx");
+        try {
+            buildIndex().save(file);
+            TestImpactIndex index = TestImpactIndex.load(file);
+
+            Assert.assertEquals(Arrays.asList("AccountServiceTest.testCreate", "AccountServiceTest.testUpdate"),
+                    index.getTests("AccountService"));
+            Assert.assertEquals(3, TestImpactIndex.merge(Arrays.asList(index, index)).getTestCount());
+        } finally {
+            file.delete();
+        }
+    }
+}
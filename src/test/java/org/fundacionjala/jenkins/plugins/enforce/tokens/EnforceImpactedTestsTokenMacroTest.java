@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import org.fundacionjala.jenkins.plugins.enforce.report.CoverageReportParser;
+import org.fundacionjala.jenkins.plugins.enforce.report.TestImpactIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class EnforceImpactedTestsTokenMacroTest {
+
+    private static TestImpactIndex buildIndex() throws IOException {
+        TestImpactIndex.Builder builder = new TestImpactIndex.Builder();
+        new CoverageReportParser(builder).parse(new StringReader("{\"files\": ["
+                + "{\"name\": \"AccountService\", \"covered\": 10, \"uncovered\": 2, "
+                + "\"tests\": [\"AccountServiceTest.testCreate\", \"AccountServiceTest.testUpdate\"]},"
+                + "{\"name\": \"ContactService\", \"covered\": 5, \"uncovered\": 5, "
+                + "\"tests\": [\"ContactServiceTest.testCreate\"]}]}"));
+        return builder.build();
+    }
+
+    @Test
+    public void testRender_shouldJoinTheTestsOfTheChangedClasses() throws IOException {
+        Assert.assertEquals("AccountServiceTest.testCreate AccountServiceTest.testUpdate ContactServiceTest.testCreate",
+                EnforceImpactedTestsTokenMacro.render(buildIndex(), Arrays.asList("AccountService", "ContactService"),
+                        " ", "ALL"));
+    }
+
+    @Test
+    public void testRender_shouldRenderTheFallbackWhenTheTestsCannotBeSelected() throws IOException {
+        TestImpactIndex index = buildIndex();
+
+        Assert.assertEquals("ALL", EnforceImpactedTestsTokenMacro.render(null,
+                Collections.singletonList("AccountService"), ",", "ALL"));
+        Assert.assertEquals("ALL", EnforceImpactedTestsTokenMacro.render(index,
+                Collections.<String>emptyList(), ",", "ALL"));
+        Assert.assertEquals("ALL", EnforceImpactedTestsTokenMacro.render(index,
+                Arrays.asList("AccountService", "NewService"), ",", "ALL"));
+        Assert.assertEquals("", EnforceImpactedTestsTokenMacro.render(index,
+                Collections.singletonList("NewService"), ",", ""));
+    }
+}
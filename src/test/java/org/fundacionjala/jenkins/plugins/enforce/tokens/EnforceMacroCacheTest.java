@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EnforceMacroCacheTest {
+
+    @Test
+    public void testPut_shouldKeepTheFirstValueOfABuild() {
+        Object build = new Object();
+        EnforceMacroCache cache = EnforceMacroCache.get(build);
+
+        Assert.assertNull(cache.get("ENFORCE_COVERAGE_RESULT#1"));
+        Assert.assertEquals("80%", cache.put("ENFORCE_COVERAGE_RESULT#1", "80%"));
+        Assert.assertEquals("80%", cache.put("ENFORCE_COVERAGE_RESULT#1", "90%"));
+        Assert.assertSame(cache, EnforceMacroCache.get(build));
+        Assert.assertEquals("80%", EnforceMacroCache.get(build).get("ENFORCE_COVERAGE_RESULT#1"));
+        Assert.assertNull(EnforceMacroCache.get(new Object()).get("ENFORCE_COVERAGE_RESULT#1"));
+    }
+
+    @Test
+    public void testRemove_shouldDropTheValuesOfTheBuild() {
+        Object build = new Object();
+        EnforceMacroCache.get(build).put("ENFORCE_COVERAGE_STATUS", "Safe");
+
+        EnforceMacroCache.remove(build);
+
+        Assert.assertNull(EnforceMacroCache.get(build).get("ENFORCE_COVERAGE_STATUS"));
+    }
+}
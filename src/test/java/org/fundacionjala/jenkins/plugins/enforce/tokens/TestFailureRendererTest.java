@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Fundacion Jala. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package org.fundacionjala.jenkins.plugins.enforce.tokens;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestFailureRendererTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static List<TestFailureRenderer.Failure> failures() {
+        return Arrays.asList(
+                new TestFailureRenderer.Failure("ContactTest", "ContactTest.testCreate", "Expected 1", "at line 10"),
+                new TestFailureRenderer.Failure("AccountTest", "AccountTest.testCreate", "Expected 2", null),
+                new TestFailureRenderer.Failure("ContactTest", "ContactTest.testDelete", null, "at line 20"));
+    }
+
+    @Test
+    public void testRender_shouldGroupTheFailuresByClass() {
+        String value = new TestFailureRenderer(0, 0, 0).renderFailures("3 tests failed", failures());
+
+        int account = value.indexOf("\nAccountTest (1 failed)\n* AccountTest.testCreate");
+        int contact = value.indexOf("\nContactTest (2 failed)\n* ContactTest.testCreate");
+        Assert.assertTrue(value.startsWith("3 tests failed\nFailures: 3"));
+        Assert.assertTrue(account > 0);
+        Assert.assertTrue(contact > account);
+        Assert.assertTrue(value.indexOf("* ContactTest.testDelete\n-------- Stacktrace --------\nat line 20") > contact);
+        Assert.assertFalse(value.contains("not shown"));
+    }
+
+    @Test
+    public void testRender_shouldCountTheFailuresNotShown() {
+        String value = new TestFailureRenderer(2, 0, 0).renderFailures("3 tests failed", failures());
+
+        Assert.assertTrue(value.contains("* ContactTest.testCreate"));
+        Assert.assertFalse(value.contains("* ContactTest.testDelete"));
+        Assert.assertTrue(value.contains("\n... 1 more failures not shown"));
+    }
+
+    @Test
+    public void testRender_shouldKeepTheOutputWithinTheByteBudget() {
+        String value = new TestFailureRenderer(0, 0, 80).renderFailures("\u00e1\u00e9\u00ed tests failed", failures());
+
+        Assert.assertTrue(value.getBytes(UTF_8).length <= 80);
+        Assert.assertTrue(value.endsWith("\n[truncated]"));
+    }
+
+    @Test
+    public void testRender_shouldNotSplitASurrogatePair() {
+        String trace = "\ud83d\ude00\ud83d\ude00\ud83d\ude00";
+        List<TestFailureRenderer.Failure> failures = Arrays.asList(
+                new TestFailureRenderer.Failure("EmojiTest", "EmojiTest.testSmile", trace, null));
+
+        String value = new TestFailureRenderer(0, 6, 0).renderFailures("", failures);
+
+        Assert.assertTrue(value.contains("\n\ud83d\ude00 [...]"));
+        for (int length = 20; length < 80; length++) {
+            String bounded = new TestFailureRenderer(0, 0, length).renderFailures("", failures);
+            Assert.assertEquals(bounded, new String(bounded.getBytes(UTF_8), UTF_8));
+            Assert.assertTrue(bounded.getBytes(UTF_8).length <= length);
+        }
+    }
+}